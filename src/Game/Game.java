@@ -7,7 +7,7 @@ import java.awt.event.*;
 public class Game extends JFrame implements ActionListener {
 
     private int deley = 0;
-    private GamePanel gamePanel = new GamePanel();
+    private GamePanel gamePanel;
     private MyJButton startButton = new MyJButton(new ImageIcon("res/start.png"), new ImageIcon("res/start_hover.png"), new ImageIcon("res/start_press.png"));
     private MyJButton quitButton = new MyJButton(new ImageIcon("res/wyjdz.png"), new ImageIcon("res/wyjdz_hover.png"), new ImageIcon("res/wyjdz_press.png"));
     private MyJButton pauseButton = new MyJButton(new ImageIcon("res/pauza.png"), new ImageIcon("res/pauza_hover.png"), new ImageIcon("res/pauza_press.png"));
@@ -15,8 +15,12 @@ public class Game extends JFrame implements ActionListener {
     private boolean paused = false;
     private int fps = 60;
 
-    public Game() {
+    /**
+     * @param seed seed of the generated maps
+     */
+    public Game(long seed) {
         super("Minesweeper");
+        gamePanel = new GamePanel(seed);
         JPanel p = new JPanel();
         p.add(startButton);
         p.add(pauseButton);
@@ -31,8 +35,9 @@ public class Game extends JFrame implements ActionListener {
         pauseButton.addActionListener(this);
     }
 
+    /** @param args optional seed of the generated maps, a seed from the clock otherwise */
     public static void main(String[] args) {
-        new Game();
+        new Game(args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime());
     }
 
     @Override
@@ -2,10 +2,11 @@ package Game;
 
 import GameMapGenerator.MapGenerator;
 import PathFinding.GameMap;
+import PathFinding.GameMapSnapshot;
 import PathFinding.UnitMover;
-import PathFindingFramework.AStarPathFinder;
+import PathFindingFramework.DStarLitePathFinder;
+import PathFindingFramework.MapChangeListener;
 import PathFindingFramework.Path;
-import PathFindingFramework.PathFinder;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -20,12 +21,19 @@ public class GamePanel extends JPanel {
     private Minesweeper minesweeper;
     private Point posOnMap;
     private GameMap map;
-    private MapGenerator mapGenerator = new MapGenerator();
+    private MapGenerator mapGenerator;
     private ArrayList<GameMap> previousMaps = new ArrayList<>();;
     private Image[] tiles = new Image[9];
     private Point tileSize;
-    private PathFinder finder;
+    private DStarLitePathFinder finder;
+    private UnitMover mover;
     private Path path;
+    /** Copy of the path for the painting thread, replaced by update() */
+    private volatile Path shownPath;
+    /** Set when a tile of the map changed since the path was last planned */
+    private boolean mapChanged;
+    /** Tile the path was last planned from */
+    private Point plannedFrom;
     private int frameCount = 0;
     private int fps = 0;
     private float interpolation;
@@ -89,13 +97,32 @@ public class GamePanel extends JPanel {
         g.fillRect(x, y - 12, fuelBar, 4);
     }
 
+    /** Game on maps generated from a seed taken from the clock */
     public GamePanel() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * @param seed seed of the map generator, so the same seed always gives the same maps
+     */
+    public GamePanel(long seed) {
+        mapGenerator = new MapGenerator(seed);
         loadImages();
         map = mapGenerator.generateMap(previousMaps);
         previousMaps.add(map);
         makeMinesweeper();
-        finder = new AStarPathFinder(map, 500, false);
-        path = finder.findPath(new UnitMover(minesweeper.getPersonality()), posOnMap.x, posOnMap.y, 0, 0);
+        finder = new DStarLitePathFinder(map, 500, false);
+        map.addMapChangeListener(finder);
+        map.addMapChangeListener(new MapChangeListener() {
+            @Override
+            public void tileChanged(int x, int y) {
+                mapChanged = true;
+            }
+        });
+        mover = new UnitMover(minesweeper.getPersonality());
+        path = finder.findPath(mover, posOnMap.x, posOnMap.y, 0, 0);
+        plannedFrom = posOnMap;
+        publish();
 
         Dimension dim = new Dimension(map.getWidthInTiles() * tileSize.x, map.getHeightInTiles() * tileSize.y);
         setPreferredSize(dim);
@@ -109,7 +136,7 @@ public class GamePanel extends JPanel {
     public void update() {
         Point newPosOnMap = new Point(minesweeper.getPos().x / tileSize.x, minesweeper.getPos().y / tileSize.y);
 
-        if (path.getLength() != 0) {
+        if (path != null && path.getLength() != 0) {
             Point lastNode = new Point(path.getStep(0).getX() * tileSize.x, path.getStep(0).getY() * tileSize.y);
 
             if (lastNode.x > minesweeper.getPos().x) {
@@ -121,7 +148,7 @@ public class GamePanel extends JPanel {
             } else if (lastNode.y < minesweeper.getPos().y) {
                 minesweeper.move(0, -1);
             } else if (lastNode.x == minesweeper.getPos().x && lastNode.y == minesweeper.getPos().y) {
-                if (path.getLength() != 0) {
+                if (path != null && path.getLength() != 0) {
                     path.removeStep(0);
                 }
             }
@@ -135,15 +162,40 @@ public class GamePanel extends JPanel {
             map.setUnit(posOnMap, 0);
             posOnMap = newPosOnMap;
         }
+        if (mapChanged || !newPosOnMap.equals(plannedFrom)) {
+            mapChanged = false;
+            plannedFrom = newPosOnMap;
+            replan(newPosOnMap.x, newPosOnMap.y);
+        }
+        publish();
+    }
+
+    /** Hand the state changed by update() to the painting thread without sharing anything mutable */
+    private void publish() {
+        map.publish();
+        shownPath = path == null ? null : new Path(path);
+    }
+
+    /** Repair the path from the tile just reached; the finder only redoes work around changed tiles */
+    private void replan(int x, int y) {
+        Path replanned = finder.findPath(mover, x, y, 0, 0);
+        if (replanned != null) {
+            replanned.removeStep(0);
+            path = replanned;
+        }
     }
 
     @Override
     public void paintComponent(Graphics g) {
+        GameMapSnapshot map = this.map.getSnapshot();
+        Path path = shownPath;
         for (int x = 0; x < map.getWidthInTiles(); x++) {
             for (int y = 0; y < map.getHeightInTiles(); y++) {
-                g.drawImage(tiles[map.getTerrain(x, y)], x * tileSize.x, y * tileSize.y, null);
-                if (map.getTerrain(x, y) == GameMap.EMPTY_FIELD && map.getUnit(x, y) != GameMap.MINESWEEPER) {
-                    g.drawImage(tiles[map.getUnit(x, y)], x * tileSize.x, y * tileSize.y, null);
+                int terrain = map.getTerrain(x, y);
+                int unit = map.getUnit(x, y);
+                g.drawImage(tiles[terrain], x * tileSize.x, y * tileSize.y, null);
+                if (terrain == GameMap.EMPTY_FIELD && unit != GameMap.MINESWEEPER) {
+                    g.drawImage(tiles[unit], x * tileSize.x, y * tileSize.y, null);
                 }
                 if (path != null) {
                     if (path.contains(x, y)) {
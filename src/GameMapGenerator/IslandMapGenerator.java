@@ -0,0 +1,259 @@
+package GameMapGenerator;
+
+import PathFinding.GameMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Island model of the map genetic algorithm. Every island is a MapGenerator with its
+ * own population, evolved on its own thread. Every migration interval an island sends
+ * copies of its best individuals to its neighbours, which replace their worst
+ * individuals with them. The best map over all islands is returned.
+ *
+ * Migrants are passed through lock-free mailboxes, one per island. Migrants sent at one
+ * migration are taken in at the next one, so an island only waits when a neighbour is
+ * a whole interval behind. They are taken in the order of the sending islands, so a
+ * seed always leads to the same maps however the threads are scheduled. Nothing is
+ * sent at the last migration, as no later one would take it in.
+ */
+public class IslandMapGenerator {
+
+    /** Which islands send migrants to which */
+    public enum Topology {
+        /** Every island sends to the next one, the last to the first */
+        RING,
+        /** Every island sends to all the others */
+        FULLY_CONNECTED
+    }
+
+    private MapGenerator[] islands;
+    private int populationSize;
+    private int generations;
+    private int migrationInterval;
+    private int migrants;
+    private Topology topology;
+    /** Source of the maps read from an archive, left after splitting one generator per island */
+    private SplittableRandom random;
+    private List<ConcurrentLinkedQueue<Migration>> mailboxes;
+    private ExecutorService executor;
+    private volatile boolean failed;
+
+    /**
+     * @param islandCount number of islands, each evolved on its own thread
+     * @param populationSize number of individuals of each island
+     * @param generations number of generations
+     * @param migrationInterval number of generations between migrations
+     * @param migrants number of individuals an island sends to each neighbour
+     * @param topology which islands are neighbours
+     * @param seed seed that, with the same settings and seed maps, always leads to the same map
+     */
+    public IslandMapGenerator(int islandCount, int populationSize, int generations, int migrationInterval,
+            int migrants, Topology topology, long seed) {
+        if (islandCount < 1 || migrationInterval < 1 || migrants < 0) {
+            throw new IllegalArgumentException("Invalid island model of " + islandCount + " islands, migrating "
+                    + migrants + " every " + migrationInterval + " generations");
+        }
+        int sources = islandCount == 1 ? 0 : topology == Topology.RING ? 1 : islandCount - 1;
+        if (migrants * sources > populationSize / 2) {
+            throw new IllegalArgumentException("Islands of " + populationSize + " individuals cannot take "
+                    + migrants * sources + " migrants");
+        }
+        this.populationSize = populationSize;
+        this.generations = generations;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+        this.topology = topology;
+        SplittableRandom random = new SplittableRandom(seed);
+        islands = new MapGenerator[islandCount];
+        mailboxes = new ArrayList<ConcurrentLinkedQueue<Migration>>(islandCount);
+        for (int i = 0; i < islandCount; i++) {
+            islands[i] = new MapGenerator(populationSize, generations, null, random.split());
+            mailboxes.add(new ConcurrentLinkedQueue<Migration>());
+        }
+        this.random = random;
+        executor = Executors.newFixedThreadPool(islandCount, new ThreadFactory() {
+            private int created;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "map-island-" + created++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Generate better map using all islands
+     * @param previousIndividuals individuals to add to initial populations, dealt out to the
+     *                            islands in turn
+     */
+    public GameMap generateMap(ArrayList<GameMap> previousIndividuals) {
+        int islandCount = islands.length;
+        List<List<GameMap>> shares = new ArrayList<List<GameMap>>(islandCount);
+        for (int i = 0; i < islandCount; i++) {
+            shares.add(new ArrayList<GameMap>());
+        }
+        if (previousIndividuals != null) {
+            int start = Math.max(0, previousIndividuals.size() - islandCount * populationSize);
+            for (int i = start; i < previousIndividuals.size(); i++) {
+                shares.get((i - start) % islandCount).add(previousIndividuals.get(i));
+            }
+        }
+        for (ConcurrentLinkedQueue<Migration> mailbox : mailboxes) {
+            mailbox.clear();
+        }
+        failed = false;
+
+        List<Future<?>> runs = new ArrayList<Future<?>>(islandCount);
+        for (int i = 0; i < islandCount; i++) {
+            final int island = i;
+            final List<GameMap> share = shares.get(i);
+            runs.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        evolve(island, share);
+                    } catch (RuntimeException | Error e) {
+                        failed = true;
+                        throw e;
+                    }
+                }
+            }));
+        }
+        for (Future<?> run : runs) {
+            try {
+                run.get();
+            } catch (InterruptedException e) {
+                failed = true;
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating map", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Island failed", e.getCause());
+            }
+        }
+
+        MapGenerator best = islands[0];
+        for (int i = 1; i < islandCount; i++) {
+            if (islands[i].getBestFitness() > best.getBestFitness()) {
+                best = islands[i];
+            }
+        }
+        return best.getBestIndividual();
+    }
+
+    /**
+     * Generate better map seeded with the most recent maps of an archive
+     * @param archive archive of maps of the default size; the new map is appended to it
+     */
+    public GameMap generateMapFromArchive(MapArchive archive) throws IOException {
+        GameMap map = generateMap(archive.readLast(islands.length * populationSize, random.split()));
+        archive.append(map);
+        return map;
+    }
+
+    /** Stop the threads of the islands */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void evolve(int island, List<GameMap> share) {
+        MapGenerator generator = islands[island];
+        List<Migration> pending = new ArrayList<Migration>();
+        generator.generateInitialPopulation(share);
+
+        for (int generation = 1; generation <= generations; generation++) {
+            generator.nextGeneration();
+            if (generation % migrationInterval != 0 || generation == generations || islands.length == 1) {
+                continue;
+            }
+            int epoch = generation / migrationInterval;
+            if (epoch > 1 && migrants > 0) {
+                generator.immigrate(receive(island, epoch - 1, pending));
+            }
+            if (migrants > 0 && (epoch + 1) * migrationInterval < generations) {
+                send(island, epoch, generator.elites(migrants));
+            }
+        }
+        generator.evaluation();
+    }
+
+    private void send(int island, int epoch, byte[][] genomes) {
+        int islandCount = islands.length;
+        if (topology == Topology.RING) {
+            mailboxes.get((island + 1) % islandCount).offer(new Migration(island, epoch, genomes));
+            return;
+        }
+        for (int i = 0; i < islandCount; i++) {
+            if (i != island) {
+                mailboxes.get(i).offer(new Migration(island, epoch, genomes));
+            }
+        }
+    }
+
+    /**
+     * Wait for the migrants all neighbours sent at a migration
+     * @param pending migrants already taken from the mailbox but sent at a later migration
+     * @return genomes of the migrants in the order of the sending islands
+     */
+    private List<byte[]> receive(int island, int epoch, List<Migration> pending) {
+        int sources = topology == Topology.RING ? 1 : islands.length - 1;
+        ConcurrentLinkedQueue<Migration> mailbox = mailboxes.get(island);
+        Migration[] arrived = new Migration[islands.length];
+        int count = 0;
+        while (true) {
+            for (int i = 0; i < pending.size(); i++) {
+                Migration migration = pending.get(i);
+                if (migration.epoch == epoch) {
+                    arrived[migration.sender] = migration;
+                    pending.remove(i--);
+                    count++;
+                }
+            }
+            if (count == sources) {
+                break;
+            }
+            Migration migration = mailbox.poll();
+            if (migration != null) {
+                pending.add(migration);
+            } else if (failed) {
+                throw new IllegalStateException("Neighbour of island " + island + " failed");
+            } else {
+                LockSupport.parkNanos(10000);
+            }
+        }
+
+        List<byte[]> genomes = new ArrayList<byte[]>(sources * migrants);
+        for (Migration migration : arrived) {
+            if (migration != null) {
+                for (byte[] genome : migration.genomes) {
+                    genomes.add(genome);
+                }
+            }
+        }
+        return genomes;
+    }
+
+    private static class Migration {
+
+        private int sender;
+        private int epoch;
+        private byte[][] genomes;
+
+        private Migration(int sender, int epoch, byte[][] genomes) {
+            this.sender = sender;
+            this.epoch = epoch;
+            this.genomes = genomes;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package GameMapGenerator;
+
+import PathFinding.GameMap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * File of maps of one size, memory mapped so any map can be read without touching
+ * the others. The file starts with a 32 byte header (magic, format version, width,
+ * height, number of maps) followed by fixed size records. A record holds the terrain
+ * plane and then the unit plane, each packing two tiles per byte in index order
+ * y * width + x, the even tile in the low nibble.
+ *
+ * The file grows by doubling and is mapped as a whole, so it is limited to 2 GB.
+ * An archive is not thread safe.
+ */
+public class MapArchive implements Closeable {
+
+    private static final int MAGIC = 0x4d535750;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 16;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int width;
+    private int height;
+    private int planeSize;
+    private int recordSize;
+    private int capacity;
+    private int count;
+
+    private MapArchive(RandomAccessFile file, int width, int height) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.width = width;
+        this.height = height;
+        this.planeSize = (width * height + 1) / 2;
+        this.recordSize = 2 * planeSize;
+    }
+
+    /**
+     * Create an empty archive, replacing any existing file
+     * @param width width of every map in the archive
+     * @param height height of every map in the archive
+     */
+    public static MapArchive create(File path, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid map size " + width + "x" + height);
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        MapArchive archive = new MapArchive(file, width, height);
+        archive.map(INITIAL_CAPACITY);
+        archive.buffer.putInt(0, MAGIC);
+        archive.buffer.putInt(4, FORMAT_VERSION);
+        archive.buffer.putInt(8, width);
+        archive.buffer.putInt(12, height);
+        archive.buffer.putInt(COUNT_OFFSET, 0);
+        return archive;
+    }
+
+    /** Open an existing archive for reading and appending */
+    public static MapArchive open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) {
+                throw new IOException("Not a map archive: " + path);
+            }
+            int version = file.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported map archive version " + version + ": " + path);
+            }
+            int width = file.readInt();
+            int height = file.readInt();
+            int count = file.readInt();
+            MapArchive archive = new MapArchive(file, width, height);
+            long capacity = (file.length() - HEADER_SIZE) / archive.recordSize;
+            if (width <= 0 || height <= 0 || count < 0 || count > capacity) {
+                throw new IOException("Corrupted map archive header: " + path);
+            }
+            archive.map((int) Math.max(capacity, INITIAL_CAPACITY));
+            archive.count = count;
+            return archive;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** @return number of maps in the archive */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Store a map at the end of the archive
+     * @return index of the stored map
+     */
+    public int append(GameMap map) throws IOException {
+        if (map.getWidthInTiles() != width || map.getHeightInTiles() != height) {
+            throw new IllegalArgumentException("Map of size " + map.getWidthInTiles() + "x"
+                    + map.getHeightInTiles() + " does not fit an archive of " + width + "x" + height);
+        }
+        if (count == capacity) {
+            map(2 * capacity);
+        }
+        int record = offset(count);
+        for (int i = 0; i < planeSize; i++) {
+            buffer.put(record + i, (byte) 0);
+            buffer.put(record + planeSize + i, (byte) 0);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int tile = y * width + x;
+                int shift = (tile & 1) << 2;
+                int terrainAt = record + (tile >>> 1);
+                int unitAt = terrainAt + planeSize;
+                buffer.put(terrainAt, (byte) (buffer.get(terrainAt) | (map.getTerrain(x, y) << shift)));
+                buffer.put(unitAt, (byte) (buffer.get(unitAt) | (map.getUnit(x, y) << shift)));
+            }
+        }
+        buffer.putInt(COUNT_OFFSET, ++count);
+        return count - 1;
+    }
+
+    /**
+     * @param random source of later random units of the map
+     * @return new map with the tiles stored at the given index
+     */
+    public GameMap read(int index, SplittableRandom random) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Map " + index + " of " + count);
+        }
+        GameMap map = GameMap.emptyMap(width, height, random);
+        int record = offset(index);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int tile = y * width + x;
+                int shift = (tile & 1) << 2;
+                map.setTerrain(x, y, (buffer.get(record + (tile >>> 1)) >>> shift) & 0x0f);
+                map.setUnit(x, y, (buffer.get(record + planeSize + (tile >>> 1)) >>> shift) & 0x0f);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Read the most recently stored maps, for example to seed MapGenerator.generateMap
+     * @param maximum largest number of maps to read
+     * @param random source split for every map read
+     * @return maps in the order they were stored
+     */
+    public ArrayList<GameMap> readLast(int maximum, SplittableRandom random) {
+        int first = Math.max(0, count - maximum);
+        ArrayList<GameMap> maps = new ArrayList<GameMap>(count - first);
+        for (int i = first; i < count; i++) {
+            maps.add(read(i, random.split()));
+        }
+        return maps;
+    }
+
+    /** Write changes of the mapped file to the storage device */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        buffer = null;
+        file.close();
+    }
+
+    private int offset(int index) {
+        return HEADER_SIZE + index * recordSize;
+    }
+
+    private void map(int records) throws IOException {
+        long length = HEADER_SIZE + (long) records * recordSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Map archive would exceed 2 GB with " + records + " maps");
+        }
+        if (file.length() < length) {
+            file.setLength(length);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = records;
+    }
+}
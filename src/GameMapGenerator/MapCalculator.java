@@ -2,11 +2,13 @@ package GameMapGenerator;
 
 import PathFinding.GameMap;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class MapCalculator {
     private static final int ROWS = GameMap.HEIGHT;
     private static final int COLUMNS = GameMap.WIDTH;
+    /** Row and column fitness weights are whole multiples of 1 / WEIGHT_SCALE, so their sums are exact */
+    public static final int WEIGHT_SCALE = 120;
 
     /**
      *  Transform matrix to array
@@ -26,22 +28,6 @@ public class MapCalculator {
         return result;
     }
 
-    /**
-     * Transform array to matrix
-     * @param array array to transform
-     * @return matrix with default number of columns and rows
-     */
-    public static int[][] arrayToMatrix(int[] array) {
-        int rows = (array.length + COLUMNS - 1) / COLUMNS;
-        int[][] matrix = new int[rows][COLUMNS];
-
-        for (int i = 0; i < array.length; i++) {
-            matrix[i / COLUMNS][i % COLUMNS] = array[i];
-        }
-
-        return matrix;
-    }
-
     /**
      * Count occurrences of object
      * @param array
@@ -56,116 +42,21 @@ public class MapCalculator {
         return  occurrences;
     }
 
-    /**
-     * Mix two arrays by taking n elements from first and m elements from second array
-     * @param firstArray first array to mix
-     * @param secondArray second array to mix
-     * @param index where we should split first and second array
-     * @param reverse if true we will take first elements from second array
-     * @return new mixed array from first and second array
-     */
-    public static int[] mixArrays(int[] firstArray, int[] secondArray, int index, boolean reverse) {
-        int size = firstArray.length;
-        int[] result = new int[size];
-
-        if (reverse) {
-            System.arraycopy(secondArray, 0, result, 0, index);
-            System.arraycopy(firstArray, index, result, index, size - index);
-        } else {
-            System.arraycopy(firstArray, 0, result, 0, index);
-            System.arraycopy(secondArray, index, result, index, size - index);
-        }
-
-        return  result;
-    }
-
-    /**
-     * Reduce number of bombs in array
-     * @param array array of bombs
-     * @return array with reduced number of bombs
-     */
-    public static int[] reduceNumberOfBombs(int[] array) {
-        int easyBombsCount = occurrences(array, GameMap.EASY_BOMB);
-        int mediumBombsCount = occurrences(array, GameMap.MEDIUM_BOMB);
-        int hardBombsCount = occurrences(array, GameMap.HARD_BOMB);
-
-        while (easyBombsCount > GameMap.maxNumberOfBombs(GameMap.EASY_BOMB) - 1) {
-            array = replaceFirstOccurrence(array, GameMap.EASY_BOMB, GameMap.EMPTY_FIELD);
-            easyBombsCount = occurrences(array, GameMap.EASY_BOMB);
-        }
-        while (mediumBombsCount > GameMap.maxNumberOfBombs(GameMap.MEDIUM_BOMB) - 1) {
-            array = replaceFirstOccurrence(array, GameMap.MEDIUM_BOMB, GameMap.EMPTY_FIELD);
-            mediumBombsCount = occurrences(array, GameMap.MEDIUM_BOMB);
-        }
-        while (hardBombsCount > GameMap.maxNumberOfBombs(GameMap.HARD_BOMB) - 1) {
-            array = replaceFirstOccurrence(array, GameMap.HARD_BOMB, GameMap.EMPTY_FIELD);
-            hardBombsCount = occurrences(array, GameMap.HARD_BOMB);
-        }
-
-        return array;
-    }
-
     /**
      * Generate random index from range based on size
      * @param size size of collection
      * @param minPercent minimum percent of size for range
      * @param maxPercent maximum percent of size for range
+     * @param random source of the index
      * @return random number from range
      */
-    public static int randomIndexForSize(int size, double minPercent, double maxPercent) {
+    public static int randomIndexForSize(int size, double minPercent, double maxPercent, SplittableRandom random) {
         int min = (int) (size * minPercent);
         int max = (int) ((size * maxPercent - min) + 1);
-        Random random = new Random();
 
         return random.nextInt(max) + min;
     }
 
-    /**
-     * Random index in range
-     * @param min minimum index number
-     * @param max maximum index number
-     * @return random number from range
-     */
-    public static int randomIndexFromRange(int min, int max) {
-        return new Random().nextInt((max - min) + 1) + min;
-    }
-
-    /**
-     * Replace random element in array with another random element
-     * @param array
-     * @param objects objects to use to replace random element
-     * @param minIndex minimum index for random index
-     * @return array with random replaced element
-     */
-    public static int[] replaceRandomElement(int[] array, int[] objects, int minIndex) {
-        int randomIndex = MapCalculator.randomIndexFromRange(minIndex, array.length - 1);
-        int randomObjectIndex = MapCalculator.randomIndexFromRange(0, objects.length - 1);
-
-        while(array[randomIndex] == objects[randomObjectIndex])
-            randomObjectIndex = MapCalculator.randomIndexFromRange(0, objects.length - 1);
-
-        array[randomIndex] = objects[randomObjectIndex];
-
-        return array;
-    }
-
-    /**
-     * Replace first occurrence of object
-     * @param array
-     * @param object object to replace
-     * @param replaceWith object which will replace passed object
-     * @return array with replaced object
-     */
-    public static int[] replaceFirstOccurrence(int[] array, int object, int replaceWith) {
-        for (int i = 0; i < array.length; i++) {
-            if (array[i] == object) {
-                array[i] = replaceWith;
-                break;
-            }
-        }
-        return array;
-    }
-
     /**
      * Calculate bombs count fitness
      * @param array array with bombs
@@ -176,6 +67,14 @@ public class MapCalculator {
         int mediumBombsCount = occurrences(array, GameMap.MEDIUM_BOMB);
         int hardBombsCount = occurrences(array, GameMap.HARD_BOMB);
 
+        return bombsCountFitness(easyBombsCount, mediumBombsCount, hardBombsCount);
+    }
+
+    /**
+     * Calculate bombs count fitness
+     * @return fitness for bomb counts
+     */
+    public static double bombsCountFitness(int easyBombsCount, int mediumBombsCount, int hardBombsCount) {
         return 0.2 * easyBombsCount + 0.4 * mediumBombsCount + 0.6 * hardBombsCount;
     }
 
@@ -225,23 +124,36 @@ public class MapCalculator {
      * @return overall fitness for column counts
      */
     public static double calculateColumnsFitness(int[][] matrix) {
-        int[] counts = numberOfOccurrencesInColumns(matrix, GameMap.EMPTY_FIELD);
-        double fitness = 0;
-
-        for (int i = 0; i < counts.length; i++) {
-            int prev = i - 1;
-            int next = i + 1;
-
-            if (prev < 0) {
-                fitness += (0.5 * counts[i] + 0.6 * counts[next]) / 2;
-            } else if (next > counts.length - 1) {
-                fitness += (0.6 * counts[prev] + 0.5 * counts[i]) / 2;
-            } else {
-                fitness += (0.8 * counts[prev] + counts[i] + 0.8 * counts[next]) / 3;
-            }
-        }
+        return columnsFitness(numberOfOccurrencesInColumns(matrix, GameMap.EMPTY_FIELD));
+    }
 
-        return fitness / COLUMNS;
+    /**
+     * Calculate column fitness from counts of non empty fields
+     * @param counts number of non empty fields in each column
+     * @return overall fitness for column counts
+     */
+    public static double columnsFitness(int[] counts) {
+        return columnsFitness(weightedSum(counts, columnWeights(counts.length)));
+    }
+
+    /**
+     * Calculate column fitness from a sum of column counts
+     * @param weightedSum sum of the counts of non empty fields in each column, weighted by columnWeights
+     * @return overall fitness for column counts
+     */
+    public static double columnsFitness(int weightedSum) {
+        return (double) weightedSum / (WEIGHT_SCALE * COLUMNS);
+    }
+
+    /**
+     * Weight of each column count in the column fitness. A column counts fully in its
+     * own term and 0.8 in the terms of its neighbours, both divided by 3; the two edge
+     * columns have terms of 0.5 for themselves and 0.6 for their neighbour, divided by 2.
+     * @param columns number of columns, at least two
+     * @return weights in units of 1 / WEIGHT_SCALE
+     */
+    public static int[] columnWeights(int columns) {
+        return weights(columns, 30, 36, 40, 32);
     }
 
     /**
@@ -250,23 +162,67 @@ public class MapCalculator {
      * @return overall fitness for row counts
      */
     public static double calculateRowsFitness(int[][] matrix) {
-        int[] counts = numberOfOccurrencesInRows(matrix, GameMap.EMPTY_FIELD);
-        double fitness = 0;
-
-        for (int i = 0; i < counts.length; i++) {
-            int prev = i - 1;
-            int next = i + 1;
-
-            if (prev < 0) {
-                fitness += (0.4 * counts[i] + 0.55 * counts[next]) / 2;
-            } else if (next > counts.length - 1) {
-                fitness += (0.55 * counts[prev] + 0.4 * counts[i]) / 2;
-            } else {
-                fitness += (0.65 * counts[prev] + 0.85 * counts[i] + 0.65 * counts[next]) / 3;
+        return rowsFitness(numberOfOccurrencesInRows(matrix, GameMap.EMPTY_FIELD));
+    }
+
+    /**
+     * Calculate rows fitness from counts of non empty fields
+     * @param counts number of non empty fields in each row
+     * @return overall fitness for row counts
+     */
+    public static double rowsFitness(int[] counts) {
+        return rowsFitness(weightedSum(counts, rowWeights(counts.length)));
+    }
+
+    /**
+     * Calculate rows fitness from a sum of row counts
+     * @param weightedSum sum of the counts of non empty fields in each row, weighted by rowWeights
+     * @return overall fitness for row counts
+     */
+    public static double rowsFitness(int weightedSum) {
+        return (double) weightedSum / (WEIGHT_SCALE * ROWS);
+    }
+
+    /**
+     * Weight of each row count in the rows fitness. A row counts 0.85 in its own term
+     * and 0.65 in the terms of its neighbours, both divided by 3; the two edge rows have
+     * terms of 0.4 for themselves and 0.55 for their neighbour, divided by 2.
+     * @param rows number of rows, at least two
+     * @return weights in units of 1 / WEIGHT_SCALE
+     */
+    public static int[] rowWeights(int rows) {
+        return weights(rows, 24, 33, 34, 26);
+    }
+
+    /**
+     * Add up the weights each count gets from its own term and the terms of its neighbours
+     * @param edge weight of an edge count in its own term
+     * @param edgeNeighbour weight of the count next to an edge in the edge term
+     * @param own weight of an inner count in its own term
+     * @param neighbour weight of a count in the term of an inner neighbour
+     */
+    private static int[] weights(int length, int edge, int edgeNeighbour, int own, int neighbour) {
+        int[] weights = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            weights[i] = i == 0 || i == length - 1 ? edge : own;
+            if (i > 0) {
+                weights[i] += i - 1 == 0 ? edgeNeighbour : neighbour;
+            }
+            if (i < length - 1) {
+                weights[i] += i + 1 == length - 1 ? edgeNeighbour : neighbour;
             }
         }
 
-        return fitness / ROWS;
+        return weights;
+    }
+
+    private static int weightedSum(int[] counts, int[] weights) {
+        int sum = 0;
+
+        for (int i = 0; i < counts.length; i++) sum += weights[i] * counts[i];
+
+        return sum;
     }
 }
 
@@ -2,24 +2,63 @@ package GameMapGenerator;
 
 import PathFinding.GameMap;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MapGenerator {
-    /** Max number of individuals in population */
+    /** Default number of individuals in population */
     private static final int POPULATION_SIZE = 40;
-    /** Max number of generations */
+    /** Default number of generations */
     private static final int GENERATIONS = 20;
-    /** Random initial population */
-    private List<GameMap> basePopulation;
-    /** Best individuals from population */
-    private List<GameMap> selectedPopulation;
-    /** Evaluations for each individual */
-    private TreeMap<Double, GameMap> evaluations;
+    private int populationSize;
+    private int generations;
+    /** Genomes of all individuals */
+    private Population population;
+    /** Fitness of each individual */
+    private double[] fitness;
+    /** Individuals ordered from the best to the worst fitness */
+    private Integer[] ranking;
+    /** Random generators of the tasks of one step, split in order from random */
+    private SplittableRandom[] streams;
+    private SplittableRandom random;
+    private ForkJoinPool pool;
 
-    public MapGenerator() {
-        basePopulation = new ArrayList<GameMap>();
-        selectedPopulation = new ArrayList<GameMap>();
-        evaluations = new TreeMap<Double, GameMap>(Collections.reverseOrder());
+    /**
+     * Generator of the default size working on the common pool
+     * @param seed seed that, with the same seed maps, always leads to the same map
+     */
+    public MapGenerator(long seed) {
+        this(POPULATION_SIZE, GENERATIONS, ForkJoinPool.commonPool(), new SplittableRandom(seed));
+    }
+
+    /**
+     * @param seed seed that, with the same sizes and seed maps, always leads to the same map
+     */
+    public MapGenerator(int populationSize, int generations, ForkJoinPool pool, long seed) {
+        this(populationSize, generations, pool, new SplittableRandom(seed));
+    }
+
+    /**
+     * @param populationSize number of individuals, at least 4
+     * @param generations number of generations
+     * @param pool pool evaluating individuals and creating children in parallel, or null
+     *             to do all the work on the calling thread
+     * @param random source of all randomness of the generator, split for every task
+     */
+    public MapGenerator(int populationSize, int generations, ForkJoinPool pool, SplittableRandom random) {
+        if (populationSize < 4) {
+            throw new IllegalArgumentException("Population of " + populationSize + " is too small");
+        }
+        this.populationSize = populationSize;
+        this.generations = generations;
+        this.pool = pool;
+        this.random = random;
+        population = new Population(populationSize, GameMap.WIDTH, GameMap.HEIGHT);
+        fitness = new double[populationSize];
+        ranking = new Integer[populationSize];
+        streams = new SplittableRandom[populationSize];
     }
 
     /**
@@ -29,163 +68,212 @@ public class MapGenerator {
     public GameMap generateMap(ArrayList<GameMap> previousIndividuals) {
         generateInitialPopulation(previousIndividuals);
 
-        for (int i = 0; i < GENERATIONS; i++) {
+        for (int i = 0; i < generations; i++) {
             evaluation();
-            selection();
             crossover();
         }
 
         return bestIndividual();
     }
 
-    /** Evaluation of each individual from population */
-    private void evaluation() {
-        resetEvaluations();
+    /**
+     * Generate better map seeded with the most recent maps of an archive
+     * @param archive archive of maps of the default size; the new map is appended to it
+     */
+    public GameMap generateMapFromArchive(MapArchive archive) throws IOException {
+        GameMap map = generateMap(archive.readLast(populationSize, random.split()));
+        archive.append(map);
+        return map;
+    }
+
+    /** Evaluate the population and replace its worse half with children of the better half */
+    void nextGeneration() {
+        evaluation();
+        crossover();
+    }
 
-        for (GameMap individual : getBasePopulation()) {
-            double fitness = calculateFitness(individual);
-            getEvaluations().put(fitness, individual);
+    /** Evaluation of each individual from population, ranking them from the best */
+    void evaluation() {
+        splitStreams(populationSize);
+        parallelFor(populationSize, new IndexTask() {
+            @Override
+            public void run(int individual) {
+                fitness[individual] = calculateFitness(individual, streams[individual]);
+            }
+        });
+        for (int i = 0; i < populationSize; i++) {
+            ranking[i] = i;
         }
+        Arrays.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(fitness[second], fitness[first]);
+            }
+        });
     }
 
     /**
      * Calculate fitness for individual
      * @param individual individual for which we calculate fitness
+     * @param random source of the random part of the fitness
      * @return fitness for individual
      */
-    private double calculateFitness(GameMap individual) {
-        int[] units = MapCalculator.matrixToArray(individual.getUnits());
-        double bombsCountFitness = MapCalculator.bombsCountFitness(units);
-        double columnsFitness = MapCalculator.calculateColumnsFitness(individual.getUnits());
-        double rowsFitness = MapCalculator.calculateRowsFitness(individual.getUnits());
+    private double calculateFitness(int individual, SplittableRandom random) {
+        double bombsCountFitness = MapCalculator.bombsCountFitness(population.count(individual, GameMap.EASY_BOMB),
+                population.count(individual, GameMap.MEDIUM_BOMB), population.count(individual, GameMap.HARD_BOMB));
+        double columnsFitness = MapCalculator.columnsFitness(population.weightedColumnCount(individual));
+        double rowsFitness = MapCalculator.rowsFitness(population.weightedRowCount(individual));
 
-        return ((bombsCountFitness + 0.65 * columnsFitness + 0.4 * rowsFitness) / 3) + new Random().nextDouble();
+        return ((bombsCountFitness + 0.65 * columnsFitness + 0.4 * rowsFitness) / 3) + random.nextDouble();
     }
 
-    /** Selection of best individuals from population */
-    private void selection() {
-        int selectedPopulationSize = POPULATION_SIZE / 2;
-        List<GameMap> population = new ArrayList<GameMap>();
-        Iterator iterator = getEvaluations().entrySet().iterator();
-
-        for (int i = 0; i < selectedPopulationSize; i++) {
-            Map.Entry element = (Map.Entry) iterator.next();
-            population.add((GameMap) element.getValue());
-        }
+    /**
+     * Replace the worse half of the population with children of the better half. The
+     * best two individuals are the parents of the first two children and so on. The split
+     * is chosen so both children keep the bomb limits where possible; bombs above the
+     * limits, left by the split or the mutation, are removed at random.
+     */
+    private void crossover() {
+        final int selectedPopulationSize = populationSize / 2;
+        int pairs = selectedPopulationSize / 2;
+
+        splitStreams(pairs);
+        parallelFor(pairs, new IndexTask() {
+            @Override
+            public void run(int pair) {
+                SplittableRandom splitting = streams[pair].split();
+                SplittableRandom mutation = streams[pair].split();
+                SplittableRandom repair = streams[pair].split();
+                int firstParent = ranking[2 * pair];
+                int secondParent = ranking[2 * pair + 1];
+                int firstChild = ranking[selectedPopulationSize + 2 * pair];
+                int secondChild = ranking[selectedPopulationSize + 2 * pair + 1];
+                int genomeLength = population.getGenomeLength();
+                int indexToSplit = population.budgetedSplit(firstParent, secondParent,
+                        (int) (genomeLength * 0.4), (int) (genomeLength * 0.6), splitting);
+                if (indexToSplit < 0) {
+                    indexToSplit = MapCalculator.randomIndexForSize(genomeLength, 0.4, 0.6, splitting);
+                }
+
+                population.crossover(firstParent, secondParent, firstChild, secondChild, indexToSplit);
+                population.mutate(firstChild, GameMap.UNIT_FIELDS, mutation);
+                population.mutate(secondChild, GameMap.UNIT_FIELDS, mutation);
+                population.reduceNumberOfBombs(firstChild, repair);
+                population.reduceNumberOfBombs(secondChild, repair);
+            }
+        });
+    }
 
-        setSelectedPopulation(population);
+    /** @return best individual from population */
+    private GameMap bestIndividual() {
+        evaluation();
+        return getBestIndividual();
     }
 
-    /** Creating new individuals from selected population */
-    private void crossover() {
-        List<GameMap> population = getSelectedPopulation();
-        List<GameMap> children = new ArrayList<GameMap>();
-        Iterator iterator = population.iterator();
-
-        while (iterator.hasNext()) {
-            GameMap firstParent = (GameMap) iterator.next();
-            GameMap secondParent = (GameMap) iterator.next();
-            Collections.addAll(children, createChildren(firstParent, secondParent));
-        }
+    /** @return best individual of the last evaluation */
+    GameMap getBestIndividual() {
+        return population.toGameMap(ranking[0], random.split());
+    }
 
-        setBasePopulation(getSelectedPopulation(), true);
-        setBasePopulation(children, false);
+    /** @return fitness of the best individual of the last evaluation */
+    double getBestFitness() {
+        return fitness[ranking[0]];
     }
 
     /**
-     * Create children from parents
-     * @param firstParent first parent
-     * @param secondParent second parent
-     * @return children created from parent
+     * @param count number of individuals
+     * @return copies of the genomes of the best individuals of the last evaluation
      */
-    private GameMap[] createChildren(GameMap firstParent, GameMap secondParent) {
-        int[] firstParentUnits = MapCalculator.matrixToArray(firstParent.getUnits());
-        int[] secondParentUnits = MapCalculator.matrixToArray(secondParent.getUnits());
-        int size = firstParentUnits.length;
-        int indexToSplit = MapCalculator.randomIndexForSize(size, 0.4, 0.6);
-        GameMap firstChild = new GameMap();
-        GameMap secondChild = new GameMap();
-
-        int[] firstChildUnits = MapCalculator.mixArrays(firstParentUnits, secondParentUnits, indexToSplit, false);
-        firstChildUnits = MapCalculator.reduceNumberOfBombs(firstChildUnits);
-        firstChild.setUnits(MapCalculator.arrayToMatrix(firstChildUnits));
-
-        int[] secondChildUnits = MapCalculator.mixArrays(firstParentUnits, secondParentUnits, indexToSplit, true);
-        secondChildUnits = MapCalculator.reduceNumberOfBombs(secondChildUnits);
-        secondChild.setUnits(MapCalculator.arrayToMatrix(secondChildUnits));
-
-        return new GameMap[]{mutation(firstChild), mutation(secondChild)};
+    byte[][] elites(int count) {
+        byte[][] genomes = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            genomes[i] = population.getGenome(ranking[i]);
+        }
+        return genomes;
     }
 
     /**
-     * Mutating new individual
-     * @param individual individual to mutate
-     * @return mutated individual
+     * Replace the individuals ranked worst by the last evaluation
+     * @param genomes genomes taken from another generator of the same size
      */
-    private GameMap mutation(GameMap individual) {
-        int[] units = MapCalculator.matrixToArray(individual.getUnits());
-
-        units = MapCalculator.replaceRandomElement(units, GameMap.UNIT_FIELDS, 1);
-        individual.setUnits(MapCalculator.arrayToMatrix(units));
-
-        return individual;
-    }
-
-    /** @return best individual from population */
-    private GameMap bestIndividual() {
-        evaluation();
-        return getEvaluations().firstEntry().getValue();
+    void immigrate(List<byte[]> genomes) {
+        for (int i = 0; i < genomes.size(); i++) {
+            population.setGenome(ranking[populationSize - 1 - i], genomes.get(i));
+        }
     }
 
     /**
      * Generate initial population
      * @param previousIndividuals individuals to add to initial populations
      */
-    private void generateInitialPopulation(ArrayList<GameMap> previousIndividuals) {
-        List<GameMap> population = new ArrayList<GameMap>();
+    void generateInitialPopulation(List<GameMap> previousIndividuals) {
+        int loaded = 0;
         if (previousIndividuals != null && previousIndividuals.size() > 0) {
-            if (previousIndividuals.size() > POPULATION_SIZE) {
-                int start = previousIndividuals.size() - POPULATION_SIZE;
-                int end = previousIndividuals.size();
-                population.addAll(previousIndividuals.subList(start, end));
-            } else {
-                population.addAll(previousIndividuals);
+            int start = Math.max(0, previousIndividuals.size() - populationSize);
+            for (int i = start; i < previousIndividuals.size(); i++) {
+                population.load(loaded++, previousIndividuals.get(i));
             }
         }
 
-        for (int i = population.size(); i < POPULATION_SIZE; i++) {
-            GameMap map = new GameMap();
-            map.randomMap();
-            population.add(map);
-        }
+        final int first = loaded;
+        splitStreams(populationSize - first);
+        parallelFor(populationSize - first, new IndexTask() {
+            @Override
+            public void run(int index) {
+                population.randomize(first + index, streams[index]);
+            }
+        });
+    }
 
-        setBasePopulation(population, true);
+    /** Fill the start of streams with generators split from random, on the calling thread */
+    private void splitStreams(int count) {
+        for (int i = 0; i < count; i++) {
+            streams[i] = random.split();
+        }
     }
 
-    private List<GameMap> getBasePopulation() { return basePopulation; }
+    /** Run the task for every index in [0, count) on the pool and wait for all of them */
+    private void parallelFor(int count, IndexTask task) {
+        if (pool == null) {
+            for (int i = 0; i < count; i++) {
+                task.run(i);
+            }
+        } else if (count > 0) {
+            pool.invoke(new IndexRange(task, 0, count));
+        }
+    }
 
-    /**
-     * Setter for population
-     * @param population individuals to add to current population
-     * @param clear if true all current individuals will be removed
-     */
-    private void setBasePopulation(List<GameMap> population, boolean clear) {
-        if (clear) this.basePopulation.clear();
-        this.basePopulation.addAll(population);
+    private interface IndexTask {
+        void run(int index);
     }
 
-    private List<GameMap> getSelectedPopulation() { return selectedPopulation; }
+    /** Splits a range of indices in halves until the ranges are small enough to run in a loop */
+    private static class IndexRange extends RecursiveAction {
 
-    private void setSelectedPopulation(List<GameMap> selectedPopulation) {
-        this.selectedPopulation.clear();
-        this.selectedPopulation.addAll(selectedPopulation);
-    }
+        private static final long serialVersionUID = 1L;
+        /** Ranges of at most this many indices run as one task */
+        private static final int THRESHOLD = 8;
 
-    private TreeMap<Double, GameMap> getEvaluations() {
-        return evaluations;
-    }
+        private IndexTask task;
+        private int from;
+        private int to;
 
-    private void resetEvaluations() {
-        this.evaluations = new TreeMap<Double, GameMap>(Collections.reverseOrder());
+        private IndexRange(IndexTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    task.run(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new IndexRange(task, from, middle), new IndexRange(task, middle, to));
+        }
     }
 }
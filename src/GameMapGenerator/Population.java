@@ -0,0 +1,320 @@
+package GameMapGenerator;
+
+import PathFinding.GameMap;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Units of every individual of the genetic algorithm, kept as genomes of one byte per
+ * tile in a single preallocated buffer. Gene i of a genome is the unit at x = i / columns,
+ * y = i % columns, the order MapCalculator.matrixToArray gives for GameMap.getUnits(), so
+ * rows run along x and columns along y. Crossover, mutation and repair work on the
+ * buffer in place; a GameMap is only built for the individual asked for.
+ *
+ * Every individual also keeps the number of genes of each unit and the sums of its
+ * non empty genes weighted by MapCalculator.rowWeights and columnWeights. All genes are
+ * written through one method that updates these terms, so a mutation costs O(1), a
+ * crossover O(changed genes) and the fitness O(1).
+ */
+public class Population {
+
+    /** Units fit in the three bits a GameMap tile has for them */
+    private static final int UNITS = 8;
+    private static final int[] BOMBS = { GameMap.EASY_BOMB, GameMap.MEDIUM_BOMB, GameMap.HARD_BOMB };
+
+    private int size;
+    private int rows;
+    private int columns;
+    private int genomeLength;
+    private byte[] genes;
+    private int[] rowWeights;
+    private int[] columnWeights;
+    private int[] weightedRows;
+    private int[] weightedColumns;
+    private int[] unitCounts;
+    /** Most bombs of each type an individual may hold, indexed by unit */
+    private int[] bombLimits = new int[UNITS];
+    /** Map an individual was loaded from, while its genome is still unchanged */
+    private GameMap[] origins;
+
+    /**
+     * @param size number of individuals
+     * @param rows map width, the number of rows of a units matrix
+     * @param columns map height, the number of columns of a units matrix
+     */
+    public Population(int size, int rows, int columns) {
+        this.size = size;
+        this.rows = rows;
+        this.columns = columns;
+        this.genomeLength = rows * columns;
+        this.genes = new byte[size * genomeLength];
+        this.rowWeights = MapCalculator.rowWeights(rows);
+        this.columnWeights = MapCalculator.columnWeights(columns);
+        this.weightedRows = new int[size];
+        this.weightedColumns = new int[size];
+        this.unitCounts = new int[size * UNITS];
+        for (int i = 0; i < size; i++) {
+            unitCounts[i * UNITS + GameMap.EMPTY_FIELD] = genomeLength;
+        }
+        this.origins = new GameMap[size];
+        for (int bomb : BOMBS) {
+            bombLimits[bomb] = Math.max(0, GameMap.maxNumberOfBombs(bomb, genomeLength) - 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getGenomeLength() {
+        return genomeLength;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /** @return unit at the given gene of an individual */
+    public int get(int individual, int gene) {
+        return genes[individual * genomeLength + gene];
+    }
+
+    /** Fill an individual with random bombs the way GameMap.randomMap places them on a map of its size */
+    public void randomize(int individual, SplittableRandom random) {
+        clear(individual);
+        int numberOfEasyBombs = random.nextInt(Math.max(1, GameMap.maxNumberOfBombs(GameMap.EASY_BOMB, genomeLength))) / 2;
+        int numberOfMediumBombs = random.nextInt(Math.max(1, GameMap.maxNumberOfBombs(GameMap.MEDIUM_BOMB, genomeLength))) / 3;
+        int numberOfHardBombs = random.nextInt(Math.max(1, GameMap.maxNumberOfBombs(GameMap.HARD_BOMB, genomeLength))) / 4;
+
+        for (int i = 0; i < numberOfEasyBombs; i++) {
+            set(individual, random.nextInt(rows) * columns + random.nextInt(columns), GameMap.EASY_BOMB);
+        }
+        for (int i = 0; i < numberOfMediumBombs; i++) {
+            set(individual, random.nextInt(rows) * columns + random.nextInt(columns), GameMap.MEDIUM_BOMB);
+        }
+        for (int i = 0; i < numberOfHardBombs; i++) {
+            set(individual, random.nextInt(rows) * columns + random.nextInt(columns), GameMap.HARD_BOMB);
+        }
+        set(individual, 0, GameMap.MINESWEEPER);
+        origins[individual] = null;
+    }
+
+    /** @return copy of the genome of an individual */
+    public byte[] getGenome(int individual) {
+        int offset = individual * genomeLength;
+        return Arrays.copyOfRange(genes, offset, offset + genomeLength);
+    }
+
+    /** Overwrite an individual with a genome of the same length */
+    public void setGenome(int individual, byte[] genome) {
+        for (int i = 0; i < genomeLength; i++) {
+            set(individual, i, genome[i]);
+        }
+        origins[individual] = null;
+    }
+
+    /** Copy the units of a map into an individual */
+    public void load(int individual, GameMap map) {
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < columns; y++) {
+                set(individual, x * columns + y, map.getUnit(x, y));
+            }
+        }
+        origins[individual] = map;
+    }
+
+    /**
+     * @param random source of the terrain of a new map
+     * @return the map an unchanged individual was loaded from, otherwise a new map
+     *         with random terrain and the units of the individual
+     */
+    public GameMap toGameMap(int individual, SplittableRandom random) {
+        if (origins[individual] != null) {
+            return origins[individual];
+        }
+        GameMap map = new GameMap(rows, columns, random);
+        int offset = individual * genomeLength;
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < columns; y++) {
+                map.setUnit(x, y, genes[offset + x * columns + y]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Write both children of two parents: the first takes the genes before the split
+     * from the first parent and the rest from the second, the second child the reverse.
+     * Each child starts as a copy of the parent it shares more genes with, so only the
+     * shorter part of the genome goes through the counts gene by gene.
+     */
+    public void crossover(int firstParent, int secondParent, int firstChild, int secondChild, int split) {
+        if (split <= genomeLength - split) {
+            copy(secondParent, firstChild);
+            copyRange(firstParent, firstChild, 0, split);
+            copy(firstParent, secondChild);
+            copyRange(secondParent, secondChild, 0, split);
+        } else {
+            copy(firstParent, firstChild);
+            copyRange(secondParent, firstChild, split, genomeLength);
+            copy(secondParent, secondChild);
+            copyRange(firstParent, secondChild, split, genomeLength);
+        }
+        origins[firstChild] = null;
+        origins[secondChild] = null;
+    }
+
+    /**
+     * Replace one random gene, never the first, with a different unit
+     * @param units units to choose the new gene from
+     */
+    public void mutate(int individual, int[] units, SplittableRandom random) {
+        int gene = 1 + random.nextInt(genomeLength - 1);
+        int unit = units[random.nextInt(units.length)];
+
+        while (get(individual, gene) == unit) {
+            unit = units[random.nextInt(units.length)];
+        }
+        set(individual, gene, unit);
+        origins[individual] = null;
+    }
+
+    /**
+     * Empty bombs of each type at random until fewer than GameMap.maxNumberOfBombs for a
+     * map of the genome's size remain. The bombs are chosen by selection sampling in one
+     * pass, so every bomb of a type is equally likely to go. Constant time if the
+     * individual is within the limits.
+     */
+    public void reduceNumberOfBombs(int individual, SplittableRandom random) {
+        int[] excess = new int[UNITS];
+        int total = excessBombs(individual, excess);
+        int[] remaining = new int[UNITS];
+        for (int bomb : BOMBS) {
+            remaining[bomb] = count(individual, bomb);
+        }
+        for (int gene = 0; total > 0; gene++) {
+            int unit = get(individual, gene);
+            if (excess[unit] > 0) {
+                if (random.nextInt(remaining[unit]) < excess[unit]) {
+                    set(individual, gene, GameMap.EMPTY_FIELD);
+                    excess[unit]--;
+                    total--;
+                }
+                remaining[unit]--;
+            }
+        }
+    }
+
+    /**
+     * Choose a crossover split in [from, to] after which both children stay within the
+     * bomb limits, uniformly among all such splits. One pass over the first to genes of
+     * both parents keeps their prefix counts; the suffix counts follow from the totals.
+     * @return split, or -1 if every split in the range breaks a limit
+     */
+    public int budgetedSplit(int firstParent, int secondParent, int from, int to, SplittableRandom random) {
+        int first = firstParent * genomeLength;
+        int second = secondParent * genomeLength;
+        int[] firstPrefix = new int[UNITS];
+        int[] secondPrefix = new int[UNITS];
+        int chosen = -1;
+        int valid = 0;
+
+        for (int split = 0; split <= to; split++) {
+            if (split >= from && withinLimits(firstParent, secondParent, firstPrefix, secondPrefix)) {
+                valid++;
+                if (random.nextInt(valid) == 0) {
+                    chosen = split;
+                }
+            }
+            if (split < to) {
+                firstPrefix[genes[first + split]]++;
+                secondPrefix[genes[second + split]]++;
+            }
+        }
+        return chosen;
+    }
+
+    /** @return number of genes of an individual equal to the unit */
+    public int count(int individual, int unit) {
+        return unitCounts[individual * UNITS + unit];
+    }
+
+    /** @return non empty genes of an individual counted per row, weighted by MapCalculator.rowWeights */
+    public int weightedRowCount(int individual) {
+        return weightedRows[individual];
+    }
+
+    /** @return non empty genes of an individual counted per column, weighted by MapCalculator.columnWeights */
+    public int weightedColumnCount(int individual) {
+        return weightedColumns[individual];
+    }
+
+    /** Write one gene, keeping the counts of the individual up to date */
+    private void set(int individual, int gene, int unit) {
+        int index = individual * genomeLength + gene;
+        int old = genes[index];
+        if (old == unit) {
+            return;
+        }
+        genes[index] = (byte) unit;
+        unitCounts[individual * UNITS + old]--;
+        unitCounts[individual * UNITS + unit]++;
+        int change = (unit > GameMap.EMPTY_FIELD ? 1 : 0) - (old > GameMap.EMPTY_FIELD ? 1 : 0);
+        if (change != 0) {
+            weightedRows[individual] += change * rowWeights[gene / columns];
+            weightedColumns[individual] += change * columnWeights[gene % columns];
+        }
+    }
+
+    /** @return total number of bombs above the limits, filling excess per bomb */
+    private int excessBombs(int individual, int[] excess) {
+        int total = 0;
+        for (int bomb : BOMBS) {
+            excess[bomb] = Math.max(0, count(individual, bomb) - bombLimits[bomb]);
+            total += excess[bomb];
+        }
+        return total;
+    }
+
+    /** @return whether both children of a split with the given prefix counts are within the bomb limits */
+    private boolean withinLimits(int firstParent, int secondParent, int[] firstPrefix, int[] secondPrefix) {
+        for (int bomb : BOMBS) {
+            int limit = bombLimits[bomb];
+            if (firstPrefix[bomb] + count(secondParent, bomb) - secondPrefix[bomb] > limit
+                    || secondPrefix[bomb] + count(firstParent, bomb) - firstPrefix[bomb] > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Empty all genes of an individual */
+    private void clear(int individual) {
+        Arrays.fill(genes, individual * genomeLength, (individual + 1) * genomeLength, (byte) GameMap.EMPTY_FIELD);
+        weightedRows[individual] = 0;
+        weightedColumns[individual] = 0;
+        Arrays.fill(unitCounts, individual * UNITS, (individual + 1) * UNITS, 0);
+        unitCounts[individual * UNITS + GameMap.EMPTY_FIELD] = genomeLength;
+    }
+
+    /** Make an individual a copy of another one, counts included */
+    private void copy(int from, int to) {
+        System.arraycopy(genes, from * genomeLength, genes, to * genomeLength, genomeLength);
+        weightedRows[to] = weightedRows[from];
+        weightedColumns[to] = weightedColumns[from];
+        System.arraycopy(unitCounts, from * UNITS, unitCounts, to * UNITS, UNITS);
+    }
+
+    /** Copy the genes in [start, end) of one individual over another */
+    private void copyRange(int from, int to, int start, int end) {
+        int offset = from * genomeLength;
+        for (int i = start; i < end; i++) {
+            set(to, i, genes[offset + i]);
+        }
+    }
+}
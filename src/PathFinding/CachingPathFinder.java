@@ -0,0 +1,181 @@
+package PathFinding;
+
+import Game.Minesweeper.Personality;
+import PathFindingFramework.MapChangeListener;
+import PathFindingFramework.Mover;
+import PathFindingFramework.Path;
+import PathFindingFramework.PathFinder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PathFinder decorator remembering the results of recent queries on one GameMap.
+ * Results are keyed on the mover's personality and the endpoints. Entries whose path
+ * crosses a changed tile, and all entries without a path, are dropped as soon as the
+ * map reports a change, so a cached path is always walkable; a tile opened elsewhere
+ * may allow a shorter one than the wrapped finder would now return.
+ *
+ * Register the cache with GameMap.addMapChangeListener. Callers receive copies, so
+ * they are free to consume the returned paths.
+ */
+public class CachingPathFinder implements PathFinder, MapChangeListener {
+
+    private PathFinder finder;
+    private GameMap map;
+    private int capacity;
+    private LinkedHashMap<Query, Path> results;
+    private Map<Integer, List<Query>> queriesByTile = new HashMap<Integer, List<Query>>();
+    /** Queries cached without a path, which any change may open */
+    private Set<Query> unreachable = new HashSet<Query>();
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity most results kept, at least 1
+     */
+    public CachingPathFinder(PathFinder finder, GameMap map, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid cache capacity " + capacity);
+        }
+        this.finder = finder;
+        this.map = map;
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<Query, Path>(16, 0.75f, true);
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        Query query = new Query(((UnitMover) mover).getPersonality(), sx, sy, tx, ty);
+
+        if (results.containsKey(query)) {
+            hits++;
+            Path path = results.get(query);
+            return path == null ? null : new Path(path);
+        }
+        misses++;
+        Path path = finder.findPath(mover, sx, sy, tx, ty);
+        if (path != null) {
+            path = new Path(path);
+        }
+        put(query, path);
+        return path == null ? null : new Path(path);
+    }
+
+    @Override
+    public void tileChanged(int x, int y) {
+        for (Query query : unreachable) {
+            results.remove(query);
+        }
+        unreachable.clear();
+        List<Query> queries = queriesByTile.remove(y * map.getWidthInTiles() + x);
+        if (queries != null) {
+            for (Query query : queries) {
+                remove(query);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public void clear() {
+        results.clear();
+        queriesByTile.clear();
+        unreachable.clear();
+    }
+
+    private void put(Query query, Path path) {
+        if (results.size() >= capacity) {
+            remove(results.keySet().iterator().next());
+        }
+        results.put(query, path);
+        if (path == null) {
+            unreachable.add(query);
+        } else {
+            for (int i = 0; i < path.getLength(); i++) {
+                int tile = path.getY(i) * map.getWidthInTiles() + path.getX(i);
+                List<Query> queries = queriesByTile.get(tile);
+                if (queries == null) {
+                    queries = new ArrayList<Query>(2);
+                    queriesByTile.put(tile, queries);
+                }
+                queries.add(query);
+            }
+        }
+    }
+
+    private void remove(Query query) {
+        Path path = results.remove(query);
+        if (path == null) {
+            unreachable.remove(query);
+            return;
+        }
+        for (int i = 0; i < path.getLength(); i++) {
+            int tile = path.getY(i) * map.getWidthInTiles() + path.getX(i);
+            List<Query> queries = queriesByTile.get(tile);
+            if (queries != null) {
+                queries.remove(query);
+                if (queries.isEmpty()) {
+                    queriesByTile.remove(tile);
+                }
+            }
+        }
+    }
+
+    private static class Query {
+
+        private Personality personality;
+        private int sx;
+        private int sy;
+        private int tx;
+        private int ty;
+
+        public Query(Personality personality, int sx, int sy, int tx, int ty) {
+            this.personality = personality;
+            this.sx = sx;
+            this.sy = sy;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = personality == null ? -1 : personality.ordinal();
+            hash = 31 * hash + sx;
+            hash = 31 * hash + sy;
+            hash = 31 * hash + tx;
+            return 31 * hash + ty;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Query) {
+                Query o = (Query) other;
+
+                return (o.personality == personality)
+                        && (o.sx == sx) && (o.sy == sy) && (o.tx == tx) && (o.ty == ty);
+            }
+
+            return false;
+        }
+    }
+}
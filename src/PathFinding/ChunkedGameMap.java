@@ -0,0 +1,292 @@
+package PathFinding;
+
+import Game.Minesweeper.Personality;
+import PathFindingFramework.MapChangeListener;
+import PathFindingFramework.Mover;
+import PathFindingFramework.TileBasedMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Map of any size split into square chunks that are generated on first access. Every
+ * chunk draws its terrain and units from its own seed, derived from the map seed and
+ * the chunk coordinates, so an untouched chunk always comes back the same and the map
+ * costs nothing until it is read.
+ *
+ * At most a fixed number of chunks is kept in memory. The least recently used one is
+ * dropped when another is needed; if its tiles were changed it is first written to a
+ * temporary file and read back from there next time. Visited marks are kept apart
+ * from the tiles and are lost with a dropped chunk.
+ *
+ * Tiles use the same packing as GameMap. A chunked map is not thread safe.
+ */
+public class ChunkedGameMap implements TileBasedMap {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+    public static final int DEFAULT_CACHED_CHUNKS = 256;
+
+    private int width;
+    private int height;
+    private long seed;
+    private int chunkSize;
+    private int chunksX;
+    private Map<Integer, Chunk> chunks;
+    private int lastIndex = -1;
+    private Chunk lastChunk;
+    private BitSet spilled = new BitSet();
+    private RandomAccessFile spillFile;
+    private File spillPath;
+    private int generatedCount;
+    private List<MapChangeListener> listeners = new ArrayList<MapChangeListener>();
+
+    public ChunkedGameMap(int width, int height, long seed) {
+        this(width, height, seed, DEFAULT_CHUNK_SIZE, DEFAULT_CACHED_CHUNKS);
+    }
+
+    /**
+     * @param chunkSize width and height of a chunk in tiles
+     * @param cachedChunks most chunks kept in memory at once
+     */
+    public ChunkedGameMap(int width, int height, long seed, int chunkSize, final int cachedChunks) {
+        if (width <= 0 || height <= 0 || chunkSize <= 0 || cachedChunks <= 0) {
+            throw new IllegalArgumentException("Invalid chunked map " + width + "x" + height
+                    + ", chunk size " + chunkSize + ", cache " + cachedChunks);
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.chunkSize = chunkSize;
+        this.chunksX = (width + chunkSize - 1) / chunkSize;
+        long chunkCount = (long) chunksX * ((height + chunkSize - 1) / chunkSize);
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks for " + width + "x" + height);
+        }
+        this.chunks = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest) {
+                if (size() <= cachedChunks) {
+                    return false;
+                }
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public int getWidthInTiles() {
+        return width;
+    }
+
+    @Override
+    public int getHeightInTiles() {
+        return height;
+    }
+
+    @Override
+    public boolean blocked(Mover mover, int x, int y) {
+        Personality personality = ((UnitMover) mover).getPersonality();
+        return GameMap.isBlocked(personality, chunk(x, y).cells[offset(x, y)]);
+    }
+
+    @Override
+    public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
+        return 1;
+    }
+
+    @Override
+    public void pathFinderVisited(int x, int y) {
+        chunk(x, y).visited[offset(x, y)] = true;
+    }
+
+    public boolean isVisited(int x, int y) {
+        return chunk(x, y).visited[offset(x, y)];
+    }
+
+    public int getTerrain(int x, int y) {
+        return chunk(x, y).cells[offset(x, y)] & GameMap.TERRAIN_MASK;
+    }
+
+    public int getUnit(int x, int y) {
+        return (chunk(x, y).cells[offset(x, y)] >>> GameMap.UNIT_SHIFT) & GameMap.UNIT_MASK;
+    }
+
+    public void setTerrain(int x, int y, int terrain) {
+        if ((terrain & ~GameMap.TERRAIN_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid terrain " + terrain);
+        }
+        Chunk chunk = chunk(x, y);
+        int offset = offset(x, y);
+        int cell = chunk.cells[offset];
+        if ((cell & GameMap.TERRAIN_MASK) != terrain) {
+            chunk.cells[offset] = (byte) ((cell & ~GameMap.TERRAIN_MASK) | terrain);
+            chunk.dirty = true;
+            fireTileChanged(x, y);
+        }
+    }
+
+    public void setUnit(int x, int y, int unit) {
+        if ((unit & ~GameMap.UNIT_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid unit " + unit);
+        }
+        Chunk chunk = chunk(x, y);
+        int offset = offset(x, y);
+        int cell = chunk.cells[offset];
+        if (((cell >>> GameMap.UNIT_SHIFT) & GameMap.UNIT_MASK) != unit) {
+            chunk.cells[offset] = (byte) ((cell & ~(GameMap.UNIT_MASK << GameMap.UNIT_SHIFT))
+                    | (unit << GameMap.UNIT_SHIFT));
+            chunk.dirty = true;
+            fireTileChanged(x, y);
+        }
+    }
+
+    public void addMapChangeListener(MapChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeMapChangeListener(MapChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** @return number of chunks currently held in memory */
+    public int getCachedChunkCount() {
+        return chunks.size();
+    }
+
+    /** @return number of chunks generated from their seed so far */
+    public int getGeneratedChunkCount() {
+        return generatedCount;
+    }
+
+    /** Delete the file holding chunks dropped from memory */
+    public void close() throws IOException {
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+            spillPath.delete();
+        }
+        spilled.clear();
+    }
+
+    private void fireTileChanged(int x, int y) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).tileChanged(x, y);
+        }
+    }
+
+    private int offset(int x, int y) {
+        return (y % chunkSize) * chunkSize + (x % chunkSize);
+    }
+
+    private Chunk chunk(int x, int y) {
+        int index = (y / chunkSize) * chunksX + (x / chunkSize);
+        if (index == lastIndex) {
+            return lastChunk;
+        }
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            chunk = spilled.get(index) ? load(index) : generate(index);
+            chunks.put(index, chunk);
+        }
+        lastIndex = index;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    private void evict(int index, Chunk chunk) {
+        if (index == lastIndex) {
+            lastIndex = -1;
+            lastChunk = null;
+        }
+        if (!chunk.dirty) {
+            return;
+        }
+        try {
+            if (spillFile == null) {
+                spillPath = File.createTempFile("chunked-map", ".chunks");
+                spillPath.deleteOnExit();
+                spillFile = new RandomAccessFile(spillPath, "rw");
+            }
+            spillFile.seek((long) index * chunk.cells.length);
+            spillFile.write(chunk.cells);
+            spilled.set(index);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to spill chunk " + index, e);
+        }
+    }
+
+    private Chunk load(int index) {
+        Chunk chunk = new Chunk(chunkSize);
+        try {
+            spillFile.seek((long) index * chunk.cells.length);
+            spillFile.readFully(chunk.cells);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load chunk " + index, e);
+        }
+        chunk.dirty = true;
+        return chunk;
+    }
+
+    /** Fill a chunk the way GameMap fills a whole map, from the seed of the chunk */
+    private Chunk generate(int index) {
+        Chunk chunk = new Chunk(chunkSize);
+        byte[] cells = chunk.cells;
+        int chunkX = index % chunksX;
+        int chunkY = index / chunksX;
+        int chunkWidth = Math.min(chunkSize, width - chunkX * chunkSize);
+        int chunkHeight = Math.min(chunkSize, height - chunkY * chunkSize);
+        int area = chunkWidth * chunkHeight;
+        SplittableRandom random = new SplittableRandom(chunkSeed(chunkX, chunkY));
+
+        for (int i = 0; i < area; i++) {
+            cells[random.nextInt(chunkHeight) * chunkSize + random.nextInt(chunkWidth)] = GameMap.UNKNOWN_FIELD;
+        }
+        for (int i = 0; i < 0.05 * area; i++) {
+            int x = random.nextInt(Math.max(1, chunkWidth - 1));
+            int y = random.nextInt(Math.max(1, chunkHeight - 1));
+            int right = Math.min(x + 1, chunkWidth - 1);
+            int below = Math.min(y + 1, chunkHeight - 1);
+            cells[y * chunkSize + x] = GameMap.SCANNED_FIELD;
+            cells[y * chunkSize + right] = GameMap.SCANNED_FIELD;
+            cells[below * chunkSize + x] = GameMap.SCANNED_FIELD;
+            cells[below * chunkSize + right] = GameMap.SCANNED_FIELD;
+        }
+        int[] bombs = { GameMap.EASY_BOMB, GameMap.MEDIUM_BOMB, GameMap.HARD_BOMB };
+        for (int type = 0; type < bombs.length; type++) {
+            int count = random.nextInt(Math.max(1, GameMap.maxNumberOfBombs(bombs[type], area))) / (type + 2);
+            for (int i = 0; i < count; i++) {
+                int cell = random.nextInt(chunkHeight) * chunkSize + random.nextInt(chunkWidth);
+                cells[cell] = (byte) ((cells[cell] & GameMap.TERRAIN_MASK) | (bombs[type] << GameMap.UNIT_SHIFT));
+            }
+        }
+        generatedCount++;
+        return chunk;
+    }
+
+    private long chunkSeed(int chunkX, int chunkY) {
+        long z = seed + 0x9e3779b97f4a7c15L * (((long) chunkY << 32) ^ chunkX);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static class Chunk {
+
+        private byte[] cells;
+        private boolean[] visited;
+        /** Changed since generation, so it must be spilled rather than regenerated */
+        private boolean dirty;
+
+        private Chunk(int chunkSize) {
+            cells = new byte[chunkSize * chunkSize];
+            visited = new boolean[chunkSize * chunkSize];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package PathFinding;
+
+import PathFindingFramework.FlowField;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flow fields of one GameMap, kept per target and passability class, so movers that
+ * are blocked by the same tiles, including ones without a personality, share a field.
+ * A cached field is rebuilt in place only when the map version has moved since it was
+ * computed.
+ */
+public class FlowFieldCache {
+
+    private GameMap map;
+    private boolean allowDiagMovement;
+    private Map<Long, CachedField> fields;
+
+    /**
+     * @param map map the fields are computed on
+     * @param capacity maximum number of fields kept, least recently used are dropped first
+     * @param allowDiagMovement whether fields allow diagonal steps
+     */
+    public FlowFieldCache(GameMap map, final int capacity, boolean allowDiagMovement) {
+        this.map = map;
+        this.allowDiagMovement = allowDiagMovement;
+        this.fields = new LinkedHashMap<Long, CachedField>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedField> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** @return field leading movers of the mover's passability class to (tx, ty) on the current map */
+    public FlowField getField(UnitMover mover, int tx, int ty) {
+        long key = ((long) map.getPassabilityClass(mover) << 32) | (ty * map.getWidthInTiles() + tx);
+        CachedField entry = fields.get(key);
+
+        if (entry == null) {
+            entry = new CachedField(new FlowField(map, mover, tx, ty, allowDiagMovement), map.getVersion());
+            fields.put(key, entry);
+        } else if (entry.version != map.getVersion()) {
+            entry.field.rebuild();
+            entry.version = map.getVersion();
+        }
+        return entry.field;
+    }
+
+    public void clear() {
+        fields.clear();
+    }
+
+    private static class CachedField {
+
+        private FlowField field;
+        private long version;
+
+        public CachedField(FlowField field, long version) {
+            this.field = field;
+            this.version = version;
+        }
+    }
+}
@@ -2,18 +2,46 @@ package PathFinding;
 
 import Game.Minesweeper;
 import Game.Minesweeper.Personality;
+import PathFindingFramework.MapChangeListener;
 import PathFindingFramework.Mover;
-import PathFindingFramework.TileBasedMap;
+import PathFindingFramework.PassabilityMap;
 import java.awt.Point;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
 
-public class GameMap implements TileBasedMap {
+/**
+ * Game board stored as one byte per tile in a flat array indexed by y * width + x.
+ * The low four bits hold the terrain and the next three the unit. Visited marks of
+ * path finders are kept in a separate array, so a search marking tiles never
+ * rewrites the byte of a tile another thread changes.
+ *
+ * For every personality a bitset of the tiles blocked for it is kept up to date as
+ * tiles change, so path finders can test a tile with a single bit lookup.
+ *
+ * A map belongs to the thread that simulates the game. Other threads read it through
+ * the immutable snapshot made by publish().
+ */
+public class GameMap implements PassabilityMap {
 
-    private Random rand = new Random();
-    private int[][] terrain = new int[WIDTH][HEIGHT];
-    private int[][] units = new int[WIDTH][HEIGHT];
-    private boolean[][] visited = new boolean[WIDTH][HEIGHT];
-    private int area = WIDTH * HEIGHT;
+    static final int TERRAIN_MASK = 0x0f;
+    static final int UNIT_SHIFT = 4;
+    static final int UNIT_MASK = 0x07;
+    private static final Personality[] PERSONALITIES = Personality.values();
+
+    private SplittableRandom rand;
+    private int width;
+    private int height;
+    private byte[] cells;
+    private boolean[] visited;
+    /** One bitset per personality ordinal, bit y * width + x set if the tile is blocked */
+    private long[][] blockedTiles;
+    private int area;
+    private List<MapChangeListener> listeners = new ArrayList<MapChangeListener>();
+    private long version;
+    private volatile GameMapSnapshot snapshot;
+    /** Default size of maps created by the game and the map generator */
     public static final int WIDTH = 20;
     public static final int HEIGHT = 20;
     public static final int EMPTY_FIELD = 0;
@@ -28,86 +56,226 @@ public class GameMap implements TileBasedMap {
     public static final int MAX_NUMBER_OF_BOMBS = (int) (0.55 * WIDTH * HEIGHT);
     public static final int[] UNIT_FIELDS = { EMPTY_FIELD, EASY_BOMB, MEDIUM_BOMB, HARD_BOMB };
 
-    public GameMap() {
-        initTerrain();
-        randomScannedFields();
+    /**
+     * @param random source of the terrain and of later random units, so the same seed
+     *               always gives the same map
+     */
+    public GameMap(int width, int height, SplittableRandom random) {
+        this(width, height, random, true);
     }
 
-    private void fillArea(int x, int y, int width, int height, int type) {
-        for (int xp = x; xp < x + width; xp++) {
-            for (int yp = y; yp < y + height; yp++) {
-                terrain[xp][yp] = type;
-            }
+    private GameMap(int width, int height, SplittableRandom random, boolean randomTerrain) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid map size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.rand = random;
+        this.area = width * height;
+        this.cells = new byte[area];
+        this.visited = new boolean[area];
+        this.blockedTiles = new long[PERSONALITIES.length][(area + 63) >>> 6];
+        if (randomTerrain) {
+            initTerrain();
+            randomScannedFields();
         }
     }
 
+    /**
+     * @param random source of later random units
+     * @return map of the given size with empty terrain and no units
+     */
+    public static GameMap emptyMap(int width, int height, SplittableRandom random) {
+        return new GameMap(width, height, random, false);
+    }
+
     public void clearVisited() {
-        for (int x = 0; x < getWidthInTiles(); x++) {
-            for (int y = 0; y < getHeightInTiles(); y++) {
-                visited[x][y] = false;
-            }
-        }
+        Arrays.fill(visited, false);
     }
 
     @Override
     public boolean blocked(Mover mover, int x, int y) {
+        return blocked(getPassabilityClass(mover), y * width + x);
+    }
+
+    @Override
+    public int getPassabilityClass(Mover mover) {
+        return passabilityClassOf(mover);
+    }
+
+    static int passabilityClassOf(Mover mover) {
         Minesweeper.Personality personality = ((UnitMover) mover).getPersonality();
-        boolean isBomb = units[x][y] == EASY_BOMB || units[x][y] == MEDIUM_BOMB || units[x][y] == HARD_BOMB;
+        // a mover without personality is blocked by the same tiles as a calm one
+        return personality == null ? Personality.CALM.ordinal() : personality.ordinal();
+    }
+
+    @Override
+    public boolean blocked(int personality, int index) {
+        return (blockedTiles[personality][index >>> 6] & (1L << index)) != 0;
+    }
+
+    static boolean isBlocked(Personality personality, int cell) {
+        int terrain = cell & TERRAIN_MASK;
+        int unit = (cell >>> UNIT_SHIFT) & UNIT_MASK;
+        boolean isBomb = unit == EASY_BOMB || unit == MEDIUM_BOMB || unit == HARD_BOMB;
 
         if (personality == Personality.CLEVER) {
-            return terrain[x][y] == SCANNED_FIELD || (terrain[x][y] == EMPTY_FIELD && isBomb);
+            return terrain == SCANNED_FIELD || (terrain == EMPTY_FIELD && isBomb);
         }
         if (personality == Personality.MAD) {
-            return terrain[x][y] == EMPTY_FIELD && isBomb;
+            return terrain == EMPTY_FIELD && isBomb;
         }
         return false;
     }
 
+    /** Bring the blocked bit of every personality in line with the tile */
+    private void updatePassability(int index) {
+        int cell = cells[index];
+        long bit = 1L << index;
+        for (int i = 0; i < PERSONALITIES.length; i++) {
+            if (isBlocked(PERSONALITIES[i], cell)) {
+                blockedTiles[i][index >>> 6] |= bit;
+            } else {
+                blockedTiles[i][index >>> 6] &= ~bit;
+            }
+        }
+    }
+
     public boolean isVisited(int x, int y) {
-        return visited[x][y];
+        return visited[y * width + x];
     }
 
     public int getTerrain(int x, int y) {
-        return terrain[x][y];
+        return cells[y * width + x] & TERRAIN_MASK;
     }
 
     public int getUnit(int x, int y) {
-        return units[x][y];
+        return (cells[y * width + x] >>> UNIT_SHIFT) & UNIT_MASK;
     }
 
     public boolean isVisited(Point point) {
-        return visited[point.x][point.y];
+        return isVisited(point.x, point.y);
     }
 
     public int getTerrain(Point point) {
-        return terrain[point.x][point.y];
+        return getTerrain(point.x, point.y);
     }
 
     public int getUnit(Point point) {
-        return units[point.x][point.y];
+        return getUnit(point.x, point.y);
     }
 
     public void setUnit(int x, int y, int unit) {
-        units[x][y] = unit;
+        if ((unit & ~UNIT_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid unit " + unit);
+        }
+        int index = y * width + x;
+        int cell = cells[index];
+        if (((cell >>> UNIT_SHIFT) & UNIT_MASK) != unit) {
+            cells[index] = (byte) ((cell & ~(UNIT_MASK << UNIT_SHIFT)) | (unit << UNIT_SHIFT));
+            updatePassability(index);
+            fireTileChanged(x, y);
+        }
     }
 
     public void setTerrain(int x, int y, int unit) {
-        terrain[x][y] = unit;
+        if ((unit & ~TERRAIN_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid terrain " + unit);
+        }
+        int index = y * width + x;
+        int cell = cells[index];
+        if ((cell & TERRAIN_MASK) != unit) {
+            cells[index] = (byte) ((cell & ~TERRAIN_MASK) | unit);
+            updatePassability(index);
+            fireTileChanged(x, y);
+        }
     }
 
     public void setUnit(Point point, int unit) {
-        units[point.x][point.y] = unit;
+        setUnit(point.x, point.y, unit);
     }
 
     public void setTerrain(Point point, int unit) {
-        terrain[point.x][point.y] = unit;
+        setTerrain(point.x, point.y, unit);
     }
 
-    public int[][] getTerrains() { return terrain; }
+    /** @return copy of the terrain indexed as [x][y] */
+    public int[][] getTerrains() {
+        int[][] terrains = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                terrains[x][y] = getTerrain(x, y);
+            }
+        }
+        return terrains;
+    }
 
-    public int[][] getUnits() { return units; }
+    /** @return copy of the units indexed as [x][y] */
+    public int[][] getUnits() {
+        int[][] units = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                units[x][y] = getUnit(x, y);
+            }
+        }
+        return units;
+    }
 
-    public void setUnits(int[][] units) { this.units = units; }
+    /** @param units units of every tile indexed as [x][y] */
+    public void setUnits(int[][] units) {
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                setUnit(x, y, units[x][y]);
+            }
+        }
+    }
+
+    /**
+     * Register listener notified whenever terrain or unit of a tile changes
+     * @param listener listener to add
+     */
+    public void addMapChangeListener(MapChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeMapChangeListener(MapChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** @return counter increased on every change of a tile */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Make the current state visible to other threads. A new snapshot is only copied
+     * when a tile changed since the last one.
+     * @return the published snapshot
+     */
+    public GameMapSnapshot publish() {
+        GameMapSnapshot published = snapshot;
+        if (published == null || published.getVersion() != version) {
+            long[][] blocked = new long[blockedTiles.length][];
+            for (int i = 0; i < blocked.length; i++) {
+                blocked[i] = blockedTiles[i].clone();
+            }
+            published = new GameMapSnapshot(width, height, version, cells.clone(), visited.clone(), blocked);
+            snapshot = published;
+        }
+        return published;
+    }
+
+    /** @return last snapshot made by publish(), or null if the map was never published */
+    public GameMapSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void fireTileChanged(int x, int y) {
+        version++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).tileChanged(x, y);
+        }
+    }
 
     @Override
     public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
@@ -116,59 +284,65 @@ public class GameMap implements TileBasedMap {
 
     @Override
     public int getHeightInTiles() {
-        return HEIGHT;
+        return height;
     }
 
     @Override
     public int getWidthInTiles() {
-        return WIDTH;
+        return width;
     }
 
     @Override
     public void pathFinderVisited(int x, int y) {
-        visited[x][y] = true;
+        visited[y * width + x] = true;
     }
 
     public void randomMap() {
-        int numberOfEasyBombs = rand.nextInt(maxNumberOfBombs(EASY_BOMB)) / 2;
-        int numberOfMediumBombs = rand.nextInt(maxNumberOfBombs(MEDIUM_BOMB)) / 3;
-        int numberOfHardBombs = rand.nextInt(maxNumberOfBombs(HARD_BOMB)) / 4;
+        int numberOfEasyBombs = rand.nextInt(Math.max(1, maxNumberOfBombs(EASY_BOMB, area))) / 2;
+        int numberOfMediumBombs = rand.nextInt(Math.max(1, maxNumberOfBombs(MEDIUM_BOMB, area))) / 3;
+        int numberOfHardBombs = rand.nextInt(Math.max(1, maxNumberOfBombs(HARD_BOMB, area))) / 4;
 
         for (int i = 0; i < numberOfEasyBombs; i++) {
-            units[rand.nextInt(WIDTH)][rand.nextInt(HEIGHT)] = EASY_BOMB;
+            setUnit(rand.nextInt(width), rand.nextInt(height), EASY_BOMB);
         }
         for (int i = 0; i < numberOfMediumBombs; i++) {
-            units[rand.nextInt(WIDTH)][rand.nextInt(HEIGHT)] = MEDIUM_BOMB;
+            setUnit(rand.nextInt(width), rand.nextInt(height), MEDIUM_BOMB);
         }
         for (int i = 0; i < numberOfHardBombs; i++) {
-            units[rand.nextInt(WIDTH)][rand.nextInt(HEIGHT)] = HARD_BOMB;
+            setUnit(rand.nextInt(width), rand.nextInt(height), HARD_BOMB);
         }
-        units[0][0] = MINESWEEPER;
+        setUnit(0, 0, MINESWEEPER);
     }
 
     public static int maxNumberOfBombs(int bomb) {
+        return maxNumberOfBombs(bomb, WIDTH * HEIGHT);
+    }
+
+    /** @return bomb limit of the given type for a map with the given number of tiles */
+    public static int maxNumberOfBombs(int bomb, int area) {
+        int maxNumberOfBombs = (int) (0.55 * area);
         switch (bomb) {
-            case EASY_BOMB: return (int) (0.7 * MAX_NUMBER_OF_BOMBS);
-            case MEDIUM_BOMB: return (int) (0.2 * MAX_NUMBER_OF_BOMBS);
-            case HARD_BOMB: return (int) (0.1 * MAX_NUMBER_OF_BOMBS);
+            case EASY_BOMB: return (int) (0.7 * maxNumberOfBombs);
+            case MEDIUM_BOMB: return (int) (0.2 * maxNumberOfBombs);
+            case HARD_BOMB: return (int) (0.1 * maxNumberOfBombs);
             default: return 0;
         }
     }
 
     private void randomScannedFields() {
         for (int i = 0; i < 0.05 * area; i++) {
-            int x = rand.nextInt(WIDTH - 1);
-            int y = rand.nextInt(HEIGHT - 1);
-            setTerrain(x + 1, y + 1, SCANNED_FIELD);
-            setTerrain(x, y + 1, SCANNED_FIELD);
-            setTerrain(x + 1, y, SCANNED_FIELD);
+            int x = rand.nextInt(Math.max(1, width - 1));
+            int y = rand.nextInt(Math.max(1, height - 1));
+            setTerrain(Math.min(x + 1, width - 1), Math.min(y + 1, height - 1), SCANNED_FIELD);
+            setTerrain(x, Math.min(y + 1, height - 1), SCANNED_FIELD);
+            setTerrain(Math.min(x + 1, width - 1), y, SCANNED_FIELD);
             setTerrain(x, y, SCANNED_FIELD);
         }
     }
 
     private void initTerrain() {
         for (int i = 0; i < area; i++) {
-            setTerrain(rand.nextInt(WIDTH), rand.nextInt(HEIGHT), UNKNOWN_FIELD);
+            setTerrain(rand.nextInt(width), rand.nextInt(height), UNKNOWN_FIELD);
         }
     }
 }
@@ -0,0 +1,80 @@
+package PathFinding;
+
+import PathFindingFramework.Mover;
+import PathFindingFramework.PassabilityMap;
+
+/**
+ * Immutable copy of a GameMap at one version. Snapshots are safe to read from any
+ * thread without locking, so painting, statistics and path finding can run on a
+ * snapshot while the game thread keeps changing the map. Path finders can search a
+ * snapshot directly; it does not record visited tiles.
+ */
+public final class GameMapSnapshot implements PassabilityMap {
+
+    private final int width;
+    private final int height;
+    private final long version;
+    private final byte[] cells;
+    private final boolean[] visited;
+    private final long[][] blockedTiles;
+
+    GameMapSnapshot(int width, int height, long version, byte[] cells, boolean[] visited, long[][] blockedTiles) {
+        this.width = width;
+        this.height = height;
+        this.version = version;
+        this.cells = cells;
+        this.visited = visited;
+        this.blockedTiles = blockedTiles;
+    }
+
+    /** @return version of the map this snapshot was taken at */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTerrain(int x, int y) {
+        return cells[y * width + x] & GameMap.TERRAIN_MASK;
+    }
+
+    public int getUnit(int x, int y) {
+        return (cells[y * width + x] >>> GameMap.UNIT_SHIFT) & GameMap.UNIT_MASK;
+    }
+
+    public boolean isVisited(int x, int y) {
+        return visited[y * width + x];
+    }
+
+    @Override
+    public int getWidthInTiles() {
+        return width;
+    }
+
+    @Override
+    public int getHeightInTiles() {
+        return height;
+    }
+
+    @Override
+    public void pathFinderVisited(int x, int y) {
+    }
+
+    @Override
+    public boolean blocked(Mover mover, int x, int y) {
+        return blocked(getPassabilityClass(mover), y * width + x);
+    }
+
+    @Override
+    public int getPassabilityClass(Mover mover) {
+        return GameMap.passabilityClassOf(mover);
+    }
+
+    @Override
+    public boolean blocked(int personality, int index) {
+        return (blockedTiles[personality][index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
+        return 1;
+    }
+}
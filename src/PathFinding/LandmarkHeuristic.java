@@ -0,0 +1,136 @@
+package PathFinding;
+
+import PathFindingFramework.AStarHeuristic;
+import PathFindingFramework.AStarPathFinder;
+import PathFindingFramework.Mover;
+import PathFindingFramework.OpenList;
+import PathFindingFramework.TileBasedMap;
+import java.util.Arrays;
+
+/**
+ * ALT heuristic: exact distances from a few landmarks to every tile are computed up
+ * front, and by the triangle inequality |d(L, t) - d(L, n)| never overestimates the
+ * distance between n and t. Landmarks are picked one by one as the tile farthest from
+ * those already chosen. The bound is never below the grid distance, so the landmarks
+ * only help where obstacles make the straight line too optimistic.
+ *
+ * The tables belong to the mover given at construction and assume symmetric costs;
+ * call rebuild() after the map changes.
+ */
+public class LandmarkHeuristic implements AStarHeuristic {
+
+    private static final float UNREACHABLE = Float.MAX_VALUE;
+
+    private TileBasedMap map;
+    private Mover mover;
+    private int width;
+    private int height;
+    private boolean allowDiagMovement;
+    private AStarHeuristic gridDistance;
+    private float[][] distances;
+    private OpenList open;
+
+    public LandmarkHeuristic(TileBasedMap map, Mover mover, int landmarkCount, boolean allowDiagMovement) {
+        this.map = map;
+        this.mover = mover;
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.allowDiagMovement = allowDiagMovement;
+        this.gridDistance = AStarPathFinder.defaultHeuristic(allowDiagMovement);
+        this.distances = new float[landmarkCount][width * height];
+        this.open = new OpenList(width * height);
+        rebuild();
+    }
+
+    /** Choose the landmarks again and recompute their distance tables */
+    public void rebuild() {
+        float[] nearest = new float[width * height];
+        Arrays.fill(nearest, UNREACHABLE);
+        int landmark = firstWalkableTile();
+
+        for (int i = 0; i < distances.length; i++) {
+            if (landmark < 0) {
+                Arrays.fill(distances[i], UNREACHABLE);
+                continue;
+            }
+            dijkstra(landmark, distances[i]);
+            int farthest = -1;
+            for (int tile = 0; tile < nearest.length; tile++) {
+                if (distances[i][tile] != UNREACHABLE) {
+                    nearest[tile] = Math.min(nearest[tile], distances[i][tile]);
+                    if (nearest[tile] > 0 && (farthest < 0 || nearest[tile] > nearest[farthest])) {
+                        farthest = tile;
+                    }
+                }
+            }
+            landmark = farthest;
+        }
+    }
+
+    public int getLandmarkCount() {
+        return distances.length;
+    }
+
+    @Override
+    public float getCost(TileBasedMap map, Mover mover, int x, int y, int tx, int ty) {
+        int node = y * width + x;
+        int target = ty * width + tx;
+        float best = gridDistance.getCost(map, mover, x, y, tx, ty);
+
+        for (int i = 0; i < distances.length; i++) {
+            float[] table = distances[i];
+            if (table[node] != UNREACHABLE && table[target] != UNREACHABLE) {
+                best = Math.max(best, Math.abs(table[target] - table[node]));
+            }
+        }
+        return best;
+    }
+
+    private int firstWalkableTile() {
+        for (int tile = 0; tile < width * height; tile++) {
+            if (!map.blocked(mover, tile % width, tile / width)) {
+                return tile;
+            }
+        }
+        return -1;
+    }
+
+    private void dijkstra(int origin, float[] cost) {
+        Arrays.fill(cost, UNREACHABLE);
+        open.clear();
+        cost[origin] = 0;
+        open.add(origin, 0);
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            int cx = current % width;
+            int cy = current / width;
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if ((x == 0) && (y == 0)) {
+                        continue;
+                    }
+                    if (!allowDiagMovement && (x != 0) && (y != 0)) {
+                        continue;
+                    }
+                    int xp = cx + x;
+                    int yp = cy + y;
+                    if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height) || map.blocked(mover, xp, yp)) {
+                        continue;
+                    }
+                    int neighbour = yp * width + xp;
+                    float nextCost = cost[current] + map.getCost(mover, cx, cy, xp, yp);
+                    if (nextCost < cost[neighbour]) {
+                        if (open.contains(neighbour)) {
+                            open.decreaseKey(neighbour, nextCost);
+                        } else {
+                            open.add(neighbour, nextCost);
+                        }
+                        cost[neighbour] = nextCost;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package PathFinding;
+
+import PathFindingFramework.AStarHeuristic;
+import PathFindingFramework.Mover;
+import PathFindingFramework.TileBasedMap;
+
+/** Exact distance on an empty grid with 4-connected movement and unit step costs */
+public class ManhattanHeuristic implements AStarHeuristic {
+
+    @Override
+    public float getCost(TileBasedMap map, Mover mover, int x, int y, int tx, int ty) {
+        return Math.abs(tx - x) + Math.abs(ty - y);
+    }
+}
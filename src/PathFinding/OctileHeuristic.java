@@ -0,0 +1,29 @@
+package PathFinding;
+
+import PathFindingFramework.AStarHeuristic;
+import PathFindingFramework.Mover;
+import PathFindingFramework.TileBasedMap;
+
+/**
+ * Exact distance on an empty grid with 8-connected movement. With equal straight and
+ * diagonal costs, as GameMap charges, it is the Chebyshev distance.
+ */
+public class OctileHeuristic implements AStarHeuristic {
+
+    private float straightCost;
+    private float diagonalCost;
+
+    public OctileHeuristic(float straightCost, float diagonalCost) {
+        this.straightCost = straightCost;
+        this.diagonalCost = diagonalCost;
+    }
+
+    @Override
+    public float getCost(TileBasedMap map, Mover mover, int x, int y, int tx, int ty) {
+        int dx = Math.abs(tx - x);
+        int dy = Math.abs(ty - y);
+        int diagonal = Math.min(dx, dy);
+
+        return straightCost * (Math.max(dx, dy) - diagonal) + diagonalCost * diagonal;
+    }
+}
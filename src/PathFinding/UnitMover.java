@@ -15,5 +15,19 @@ public class UnitMover implements Mover {
     {
         return personality;
     }
+
+    @Override
+    public int hashCode() {
+        return personality == null ? 0 : personality.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof UnitMover) {
+            return ((UnitMover) other).personality == personality;
+        }
+
+        return false;
+    }
 }
 
@@ -1,35 +1,81 @@
 package PathFindingFramework;
 
-import PathFinding.ClosestHeuristic;
-import java.util.PriorityQueue;
+import PathFinding.ManhattanHeuristic;
+import PathFinding.OctileHeuristic;
 
-public class AStarPathFinder implements PathFinder {
+public class AStarPathFinder implements InstrumentedPathFinder {
 
-    private PriorityQueue closed = new PriorityQueue();
-    private PriorityQueue open = new PriorityQueue();
+    private SearchContext context;
     private TileBasedMap map;
+    private PassabilityMap passability;
+    private int passabilityClass;
     private int maxSearchDistance;
-    private Node[][] nodes;
     private boolean allowDiagMovement;
     private AStarHeuristic heuristic;
+    private SearchStats stats;
+    private boolean integerCosts;
+    private BucketOpenList buckets;
+    private int expandedCount;
+    private int generated;
+    private int reopened;
+    private int peakOpen;
+    private int maxDepth;
+    private boolean found;
 
     public AStarPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
-        this(map, maxSearchDistance, allowDiagMovement, new ClosestHeuristic());
+        this(map, maxSearchDistance, allowDiagMovement, defaultHeuristic(allowDiagMovement));
     }
 
     public AStarPathFinder(TileBasedMap map, int maxSearchDistance,
             boolean allowDiagMovement, AStarHeuristic heuristic) {
         this.heuristic = heuristic;
         this.map = map;
+        this.passability = map instanceof PassabilityMap ? (PassabilityMap) map : null;
         this.maxSearchDistance = maxSearchDistance;
         this.allowDiagMovement = allowDiagMovement;
+        this.context = new SearchContext(map);
+    }
 
-        nodes = new Node[map.getWidthInTiles()][map.getHeightInTiles()];
-        for (int x = 0; x < map.getWidthInTiles(); x++) {
-            for (int y = 0; y < map.getHeightInTiles(); y++) {
-                nodes[x][y] = new Node(x, y);
-            }
+    /**
+     * Heuristic exact on an empty grid with unit step costs: Manhattan distance for
+     * 4-connected movement and octile distance with unit diagonals otherwise
+     */
+    public static AStarHeuristic defaultHeuristic(boolean allowDiagMovement) {
+        if (allowDiagMovement) {
+            return new OctileHeuristic(1, 1);
         }
+        return new ManhattanHeuristic();
+    }
+
+    /** @return number of nodes taken from the open list by the last findPath call */
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    @Override
+    public void setSearchStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public SearchStats getSearchStats() {
+        return stats;
+    }
+
+    /**
+     * Order the open list with a bucket queue on integer f values instead of the binary
+     * heap. If a step cost or heuristic value turns out not to be a whole number the
+     * query is repeated on the heap and the finder stays in float mode.
+     */
+    public void setIntegerCosts(boolean integerCosts) {
+        this.integerCosts = integerCosts;
+        if (integerCosts && buckets == null) {
+            buckets = new BucketOpenList(context.getSize());
+        }
+    }
+
+    public boolean isIntegerCosts() {
+        return integerCosts;
     }
 
     @Override
@@ -37,22 +83,61 @@ public class AStarPathFinder implements PathFinder {
         if (map.blocked(mover, tx, ty)) {
             return null;
         }
-        nodes[sx][sy].cost = 0;
-        nodes[sx][sy].depth = 0;
-        closed.clear();
-        open.clear();
-        open.add(nodes[sx][sy]);
-        
-        nodes[tx][ty].parent = null;
-        
-        int maxDepth = 0;
+        if (passability != null) {
+            passabilityClass = passability.getPassabilityClass(mover);
+        }
+        long startTime = stats == null ? 0 : System.nanoTime();
+        int start = context.index(sx, sy);
+        int goal = context.index(tx, ty);
+
+        boolean searched = false;
+        if (integerCosts) {
+            searched = searchBuckets(mover, sx, sy, tx, ty, start, goal);
+            if (!searched) {
+                integerCosts = false;
+            }
+        }
+        if (!searched) {
+            searchHeap(mover, sx, sy, tx, ty, start, goal);
+        }
+        if (stats != null) {
+            stats.record(expandedCount, generated, reopened, peakOpen, maxDepth,
+                    !found && maxDepth >= maxSearchDistance, System.nanoTime() - startTime);
+        }
+
+        return context.buildPath(start, goal);
+    }
+
+    private void begin(int start) {
+        context.reset();
+        context.setNode(start, 0, 0, SearchContext.NO_PARENT, 0);
+        maxDepth = 0;
+        generated = 0;
+        reopened = 0;
+        peakOpen = 1;
+        found = false;
+        expandedCount = 0;
+    }
+
+    private void searchHeap(Mover mover, int sx, int sy, int tx, int ty, int start, int goal) {
+        SearchContext ctx = context;
+        OpenList open = ctx.getOpen();
+        begin(start);
+        open.add(start, 0);
+
         while ((maxDepth < maxSearchDistance) && !open.isEmpty()) {
 
-            Node current = (Node)open.poll();
-            if (current == nodes[tx][ty]) {
+            int current = open.poll();
+            expandedCount++;
+            if (current == goal) {
+                found = true;
                 break;
             }
-            closed.add(current);
+            ctx.setClosed(current, true);
+            int cx = ctx.getX(current);
+            int cy = ctx.getY(current);
+            float currentCost = ctx.getCost(current);
+            int depth = ctx.getDepth(current) + 1;
 
             for (int x = -1; x < 2; x++) {
                 for (int y = -1; y < 2; y++) {
@@ -65,109 +150,120 @@ public class AStarPathFinder implements PathFinder {
                         }
                     }
 
-                    int xp = x + current.x;
-                    int yp = y + current.y;
-                    
-                    //System.out.println("xp: "+xp+" yp: "+yp);
+                    int xp = x + cx;
+                    int yp = y + cy;
+
                     if (isValidLocation(mover, sx, sy, xp, yp)) {
-                         float nextStepCost = current.cost + map.getCost(mover, sx, sy, tx, ty);
-                        Node neighbour = nodes[xp][yp];
+                        float nextStepCost = currentCost + map.getCost(mover, cx, cy, xp, yp);
+                        int neighbour = ctx.index(xp, yp);
                         map.pathFinderVisited(xp, yp);
 
-                        if (nextStepCost < neighbour.cost) {
+                        if (!ctx.isSeen(neighbour)) {
+                            float h = heuristic.getCost(map, mover, xp, yp, tx, ty);
+                            ctx.setNode(neighbour, nextStepCost, h, current, depth);
+                            maxDepth = Math.max(maxDepth, depth);
+                            open.add(neighbour, ctx.getF(neighbour), h);
+                            generated++;
+                        } else if (nextStepCost < ctx.getCost(neighbour)) {
+                            ctx.relax(neighbour, nextStepCost, current, depth);
+                            maxDepth = Math.max(maxDepth, depth);
                             if (open.contains(neighbour)) {
-                                open.remove(neighbour);
-                            }
-                            if (closed.contains(neighbour)) {
-                                closed.remove(neighbour);
+                                open.decreaseKey(neighbour, ctx.getF(neighbour));
+                            } else {
+                                ctx.setClosed(neighbour, false);
+                                open.add(neighbour, ctx.getF(neighbour), ctx.getHeuristic(neighbour));
+                                reopened++;
                             }
                         }
+                    }
+                }
+            }
+            peakOpen = Math.max(peakOpen, open.size());
+        }
+    }
+
+    /** Same search as searchHeap on the bucket queue; @return false if a cost was not integral */
+    private boolean searchBuckets(Mover mover, int sx, int sy, int tx, int ty, int start, int goal) {
+        SearchContext ctx = context;
+        BucketOpenList open = buckets;
+        open.clear();
+        begin(start);
+        open.add(start, 0);
+
+        while ((maxDepth < maxSearchDistance) && !open.isEmpty()) {
+
+            int current = open.poll();
+            expandedCount++;
+            if (current == goal) {
+                found = true;
+                break;
+            }
+            ctx.setClosed(current, true);
+            int cx = ctx.getX(current);
+            int cy = ctx.getY(current);
+            int currentCost = (int) ctx.getCost(current);
+            int depth = ctx.getDepth(current) + 1;
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if ((x == 0) && (y == 0)) {
+                        continue;
+                    }
+                    if (!allowDiagMovement) {
+                        if ((x != 0) && (y != 0)) {
+                            continue;
+                        }
+                    }
+
+                    int xp = x + cx;
+                    int yp = y + cy;
+
+                    if (isValidLocation(mover, sx, sy, xp, yp)) {
+                        float stepCost = map.getCost(mover, cx, cy, xp, yp);
+                        if (stepCost != (int) stepCost) {
+                            return false;
+                        }
+                        int nextStepCost = currentCost + (int) stepCost;
+                        int neighbour = ctx.index(xp, yp);
+                        map.pathFinderVisited(xp, yp);
 
-                        if (!open.contains(neighbour) && !closed.contains(neighbour)) {
-                            neighbour.cost = nextStepCost;
-                            neighbour.heuristic = heuristic.getCost(map, mover, x, y, tx, ty);
-                            maxDepth = Math.max(maxDepth, neighbour.setParent(current));
-                            open.add(neighbour);
+                        if (!ctx.isSeen(neighbour)) {
+                            float h = heuristic.getCost(map, mover, xp, yp, tx, ty);
+                            if (h != (int) h) {
+                                return false;
+                            }
+                            ctx.setNode(neighbour, nextStepCost, h, current, depth);
+                            maxDepth = Math.max(maxDepth, depth);
+                            open.add(neighbour, nextStepCost + (int) h);
+                            generated++;
+                        } else if (nextStepCost < ctx.getCost(neighbour)) {
+                            ctx.relax(neighbour, nextStepCost, current, depth);
+                            maxDepth = Math.max(maxDepth, depth);
+                            int f = nextStepCost + (int) ctx.getHeuristic(neighbour);
+                            if (open.contains(neighbour)) {
+                                open.decreaseKey(neighbour, f);
+                            } else {
+                                ctx.setClosed(neighbour, false);
+                                open.add(neighbour, f);
+                                reopened++;
+                            }
                         }
                     }
                 }
             }
+            peakOpen = Math.max(peakOpen, open.size());
         }
-        if (nodes[tx][ty].parent == null) {
-            return null;
-        }
-    
-        Path path = new Path();
-        Node target = nodes[tx][ty]; 
-        PathFinder.Action action = PathFinder.Action.N;
-        
-        while (target != nodes[sx][sy]) {
-           
-            if(target.x < target.parent.x)
-                target.parent.setAction(Action.W);
-            else if(target.y < target.parent.y)
-                target.parent.setAction(Action.N);
-            else if(target.x > target.parent.x)
-               target.parent.setAction(Action.E);
-            else if(target.y > target.parent.y)
-                target.parent.setAction(Action.S);
-            path.prependStep(target.x, target.y, target.getAction());
-            target = target.parent;
-        }
-
-        path.prependStep(sx, sy, target.getAction());
-        return path;
+        return true;
     }
 
     protected boolean isValidLocation(Mover mover, int sx, int sy, int x, int y) {
         boolean invalid = (x < 0) || (y < 0) || (x >= map.getWidthInTiles()) || (y >= map.getHeightInTiles());
 
         if ((!invalid) && ((sx != x) || (sy != y))) {
-            invalid = map.blocked(mover, x, y);
+            invalid = passability != null
+                    ? passability.blocked(passabilityClass, y * map.getWidthInTiles() + x)
+                    : map.blocked(mover, x, y);
         }
         return !invalid;
     }
-    private class Node implements Comparable {
-
-        private int x;
-        private int y;
-        private float cost;
-        private Node parent;
-        private PathFinder.Action action;
-        private float heuristic;
-        private int depth;
-        
-        public Node(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-        public void setAction(PathFinder.Action action){
-            this.action=action;
-        }
-        public PathFinder.Action getAction(){
-           return this.action;
-        }
-        public int setParent(Node parent) {
-            depth = parent.depth + 1;
-            this.parent = parent;
-
-            return depth;
-        }
-
-        @Override
-        public int compareTo(Object other) {
-            Node o = (Node) other;
-
-            float f = heuristic + cost;
-            float of = o.heuristic + o.cost;
-
-            if (f < of) {
-                return -1;
-            } else if (f > of) {
-                return 1;
-            } else {
-                return 0;
-            }
-        }
-    }
-}
\ No newline at end of file
+}
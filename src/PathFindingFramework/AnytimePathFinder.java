@@ -0,0 +1,306 @@
+package PathFindingFramework;
+
+/**
+ * Anytime Repairing A* (ARA*). The first pass runs weighted A* with f = g + epsilon * h,
+ * which finds a path of at most epsilon times the optimal cost quickly. Each later pass
+ * lowers epsilon and reuses the costs of the previous one, re-expanding only the nodes
+ * whose cost improved, until epsilon reaches 1 and the path is optimal.
+ *
+ * A query runs until its deadline and returns the best path found so far. Repeating
+ * the same query continues where the last call stopped, for as long as the map does
+ * not change; register the finder as a MapChangeListener to be told about changes.
+ */
+public class AnytimePathFinder implements PathFinder, MapChangeListener {
+
+    /** Default time budget of findPath without a deadline: one tick at 30 updates/s */
+    public static final long DEFAULT_BUDGET_NANOS = 1000000000L / 30;
+    private static final float DEFAULT_INITIAL_EPSILON = 3;
+    private static final float DEFAULT_EPSILON_STEP = 0.5f;
+    /** Expansions between two reads of the clock */
+    private static final int CLOCK_INTERVAL = 32;
+
+    private TileBasedMap map;
+    private PassabilityMap passability;
+    private int passabilityClass;
+    private int width;
+    private int height;
+    private int maxSearchDistance;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private float initialEpsilon;
+    private float epsilonStep;
+    private long budgetNanos;
+
+    private float[] g;
+    private float[] h;
+    private int[] parent;
+    private int[] depth;
+    private int[] seen;
+    private int[] closed;
+    private int[] inconsistent;
+    private int[] incons;
+    private int inconsCount;
+    private int generation;
+    private int closedGeneration;
+    private int inconsGeneration;
+    private OpenList open;
+
+    private Mover mover;
+    private int start = -1;
+    private int goal = -1;
+    private boolean mapChanged;
+    private float epsilon;
+    private Path bestPath;
+    private float bestBound;
+
+    public AnytimePathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+        this(map, maxSearchDistance, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement),
+                DEFAULT_INITIAL_EPSILON, DEFAULT_EPSILON_STEP, DEFAULT_BUDGET_NANOS);
+    }
+
+    /**
+     * @param heuristic consistent heuristic; epsilon is applied on top of it
+     * @param initialEpsilon weight of the first pass, at least 1
+     * @param epsilonStep amount epsilon is lowered by between passes
+     * @param budgetNanos time given to findPath calls without an explicit deadline
+     */
+    public AnytimePathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement,
+            AStarHeuristic heuristic, float initialEpsilon, float epsilonStep, long budgetNanos) {
+        if (initialEpsilon < 1 || epsilonStep <= 0) {
+            throw new IllegalArgumentException("Epsilon must start at 1 or more and decrease: "
+                    + initialEpsilon + ", " + epsilonStep);
+        }
+        this.map = map;
+        this.passability = map instanceof PassabilityMap ? (PassabilityMap) map : null;
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.maxSearchDistance = maxSearchDistance;
+        this.allowDiagMovement = allowDiagMovement;
+        this.heuristic = heuristic;
+        this.initialEpsilon = initialEpsilon;
+        this.epsilonStep = epsilonStep;
+        this.budgetNanos = budgetNanos;
+
+        int size = width * height;
+        g = new float[size];
+        h = new float[size];
+        parent = new int[size];
+        depth = new int[size];
+        seen = new int[size];
+        closed = new int[size];
+        inconsistent = new int[size];
+        incons = new int[size];
+        open = new OpenList(size);
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        return findPath(mover, sx, sy, tx, ty, System.nanoTime() + budgetNanos);
+    }
+
+    /**
+     * Search until the path is optimal or the deadline passes
+     * @param deadlineNanos value of System.nanoTime() at which to stop
+     * @return best path found so far for this query, or null if none has been found yet
+     */
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty, long deadlineNanos) {
+        if (map.blocked(mover, tx, ty)) {
+            return null;
+        }
+        int from = sy * width + sx;
+        int to = ty * width + tx;
+        if (from == to) {
+            return null;
+        }
+        if (mapChanged || from != start || to != goal || !mover.equals(this.mover)) {
+            begin(mover, from, to);
+        }
+        if (passability != null) {
+            passabilityClass = passability.getPassabilityClass(mover);
+        }
+
+        while (!isOptimal()) {
+            if (!improvePath(deadlineNanos)) {
+                break;
+            }
+            if (seen[goal] == generation) {
+                bestPath = buildPath();
+                bestBound = Math.min(epsilon, suboptimalityBound());
+            } else if (open.isEmpty() && inconsCount == 0) {
+                epsilon = 1;
+                bestBound = 1;
+                break;
+            }
+            if (epsilon == 1) {
+                bestBound = 1;
+            }
+            if (isOptimal()) {
+                break;
+            }
+            epsilon = Math.max(1, epsilon - epsilonStep);
+            beginPass();
+        }
+        return bestPath == null ? null : new Path(bestPath);
+    }
+
+    /** @return true once the current query has its optimal path, or is known to have none */
+    public boolean isOptimal() {
+        return bestBound == 1;
+    }
+
+    /** @return factor by which the last returned path may exceed the optimal cost */
+    public float getSuboptimalityBound() {
+        return bestBound;
+    }
+
+    @Override
+    public void tileChanged(int x, int y) {
+        mapChanged = true;
+    }
+
+    private void begin(Mover mover, int from, int to) {
+        this.mover = mover;
+        start = from;
+        goal = to;
+        mapChanged = false;
+        epsilon = initialEpsilon;
+        bestPath = null;
+        bestBound = Float.MAX_VALUE;
+        generation++;
+        inconsGeneration++;
+        inconsCount = 0;
+        open.clear();
+
+        visit(start, 0, -1, 0);
+        closedGeneration++;
+        open.add(start, key(start), h[start]);
+    }
+
+    /** Move the inconsistent nodes back on the open list, re-key it for the new epsilon and reopen every node */
+    private void beginPass() {
+        int[] queued = new int[open.size() + inconsCount];
+        int count = 0;
+        while (!open.isEmpty()) {
+            queued[count++] = open.poll();
+        }
+        for (int i = 0; i < inconsCount; i++) {
+            queued[count++] = incons[i];
+        }
+        inconsCount = 0;
+        inconsGeneration++;
+        closedGeneration++;
+        for (int i = 0; i < count; i++) {
+            open.add(queued[i], key(queued[i]), h[queued[i]]);
+        }
+    }
+
+    /**
+     * Expand nodes until no open node can improve the path to the goal
+     * @return false if the deadline passed first
+     */
+    private boolean improvePath(long deadlineNanos) {
+        int expansions = 0;
+        while (!open.isEmpty()) {
+            int current = open.peek();
+            if (seen[goal] == generation && key(goal) <= open.getKey(current)) {
+                return true;
+            }
+            if (++expansions % CLOCK_INTERVAL == 0 && System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            open.poll();
+            closed[current] = closedGeneration;
+            if (depth[current] >= maxSearchDistance) {
+                continue;
+            }
+            int cx = current % width;
+            int cy = current / width;
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if ((x == 0) && (y == 0)) {
+                        continue;
+                    }
+                    if (!allowDiagMovement && (x != 0) && (y != 0)) {
+                        continue;
+                    }
+                    int xp = cx + x;
+                    int yp = cy + y;
+                    if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height)) {
+                        continue;
+                    }
+                    int neighbour = yp * width + xp;
+                    if ((neighbour != start) && (passability != null
+                            ? passability.blocked(passabilityClass, neighbour) : map.blocked(mover, xp, yp))) {
+                        continue;
+                    }
+                    float nextStepCost = g[current] + map.getCost(mover, cx, cy, xp, yp);
+                    map.pathFinderVisited(xp, yp);
+                    if (seen[neighbour] == generation && nextStepCost >= g[neighbour]) {
+                        continue;
+                    }
+                    visit(neighbour, nextStepCost, current, depth[current] + 1);
+
+                    if (closed[neighbour] != closedGeneration) {
+                        if (open.contains(neighbour)) {
+                            open.update(neighbour, key(neighbour), h[neighbour]);
+                        } else {
+                            open.add(neighbour, key(neighbour), h[neighbour]);
+                        }
+                    } else if (inconsistent[neighbour] != inconsGeneration) {
+                        inconsistent[neighbour] = inconsGeneration;
+                        incons[inconsCount++] = neighbour;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void visit(int node, float cost, int from, int steps) {
+        if (seen[node] != generation) {
+            seen[node] = generation;
+            h[node] = heuristic.getCost(map, mover, node % width, node / width, goal % width, goal / width);
+        }
+        g[node] = cost;
+        parent[node] = from;
+        depth[node] = steps;
+    }
+
+    private float key(int node) {
+        return g[node] + epsilon * h[node];
+    }
+
+    /** g(goal) over the smallest unweighted f of any node that could still improve it */
+    private float suboptimalityBound() {
+        float lowest = g[goal];
+        for (int i = 0; i < inconsCount; i++) {
+            lowest = Math.min(lowest, g[incons[i]] + h[incons[i]]);
+        }
+        int[] queued = new int[open.size()];
+        int count = 0;
+        while (!open.isEmpty()) {
+            int node = open.poll();
+            queued[count++] = node;
+            lowest = Math.min(lowest, g[node] + h[node]);
+        }
+        for (int i = 0; i < count; i++) {
+            open.add(queued[i], key(queued[i]), h[queued[i]]);
+        }
+        return lowest <= 0 ? 1 : Math.max(1, g[goal] / lowest);
+    }
+
+    private Path buildPath() {
+        Path path = new Path();
+        int node = goal;
+        PathFinder.Action action = null;
+        while (node != start) {
+            path.prependStep(node % width, node / width, action);
+            int previous = parent[node];
+            action = SearchContext.direction(previous % width, previous / width, node % width, node / width);
+            node = previous;
+        }
+        path.prependStep(start % width, start / width, action);
+        return path;
+    }
+}
@@ -0,0 +1,296 @@
+package PathFindingFramework;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A* run from both ends at once. Every time a frontier reaches a node the other one
+ * has reached, the joined cost becomes a candidate; the search stops as soon as the
+ * smallest f on either open list is no lower than the best candidate, which with a
+ * consistent heuristic makes the joined path optimal.
+ *
+ * In parallel mode the backward frontier runs on its own daemon thread. Each side
+ * publishes its costs in an atomic array, so the frontiers only share those arrays
+ * and the best meeting point.
+ */
+public class BidirectionalAStarPathFinder implements InstrumentedPathFinder {
+
+    private TileBasedMap map;
+    private PassabilityMap passability;
+    private int passabilityClass;
+    private int width;
+    private int height;
+    private int maxSearchDistance;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private Frontier forward;
+    private Frontier backward;
+    private ExecutorService executor;
+    private final Object meetingLock = new Object();
+    private volatile float bestCost;
+    private volatile int meetingNode;
+    private volatile boolean finished;
+    private Mover mover;
+    private int start;
+    private int goal;
+    private SearchStats stats;
+
+    public BidirectionalAStarPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+        this(map, maxSearchDistance, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement), false);
+    }
+
+    /**
+     * @param parallel if true the two frontiers are expanded on two threads
+     */
+    public BidirectionalAStarPathFinder(TileBasedMap map, int maxSearchDistance,
+            boolean allowDiagMovement, AStarHeuristic heuristic, boolean parallel) {
+        this.map = map;
+        this.passability = map instanceof PassabilityMap ? (PassabilityMap) map : null;
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.maxSearchDistance = maxSearchDistance;
+        this.allowDiagMovement = allowDiagMovement;
+        this.heuristic = heuristic;
+        forward = new Frontier();
+        backward = new Frontier();
+        forward.other = backward;
+        backward.other = forward;
+        backward.reverse = true;
+        if (parallel) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "bidirectional-astar");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    @Override
+    public void setSearchStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public SearchStats getSearchStats() {
+        return stats;
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        if (map.blocked(mover, tx, ty)) {
+            return null;
+        }
+        if (passability != null) {
+            passabilityClass = passability.getPassabilityClass(mover);
+        }
+        long startTime = stats == null ? 0 : System.nanoTime();
+        this.mover = mover;
+        start = sy * width + sx;
+        goal = ty * width + tx;
+        if (start == goal) {
+            return null;
+        }
+        bestCost = Float.MAX_VALUE;
+        meetingNode = -1;
+        finished = false;
+        forward.begin(start, goal);
+        backward.begin(goal, start);
+
+        if (executor == null) {
+            while (!finished) {
+                Frontier side = forward.context.getOpen().size() <= backward.context.getOpen().size() ? forward : backward;
+                side.step();
+            }
+        } else {
+            Future<?> backwardSearch = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    while (!finished) {
+                        backward.step();
+                    }
+                }
+            });
+            while (!finished) {
+                forward.step();
+            }
+            try {
+                backwardSearch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Backward search failed", e.getCause());
+            }
+        }
+        this.mover = null;
+        if (stats != null) {
+            int maxDepth = Math.max(forward.maxDepth, backward.maxDepth);
+            stats.record(forward.expanded + backward.expanded, forward.generated + backward.generated,
+                    forward.reopened + backward.reopened, forward.peakOpen + backward.peakOpen, maxDepth,
+                    meetingNode < 0 && maxDepth >= maxSearchDistance, System.nanoTime() - startTime);
+        }
+
+        return join();
+    }
+
+    /** Stop the thread used by the parallel mode */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private Path join() {
+        int meeting = meetingNode;
+        if (meeting < 0) {
+            return null;
+        }
+        int[] tiles = new int[forward.context.getDepth(meeting) + backward.context.getDepth(meeting) + 1];
+        int node = meeting;
+        for (int i = forward.context.getDepth(meeting); i >= 0; i--) {
+            tiles[i] = node;
+            node = forward.context.getParent(node);
+        }
+        node = meeting;
+        for (int i = forward.context.getDepth(meeting) + 1; i < tiles.length; i++) {
+            node = backward.context.getParent(node);
+            tiles[i] = node;
+        }
+
+        Path path = new Path();
+        for (int i = 0; i < tiles.length; i++) {
+            int x = tiles[i] % width;
+            int y = tiles[i] / width;
+            PathFinder.Action action = null;
+            if (i + 1 < tiles.length) {
+                action = SearchContext.direction(x, y, tiles[i + 1] % width, tiles[i + 1] / width);
+            }
+            path.appendStep(x, y, action);
+        }
+        return path;
+    }
+
+    private void meet(int node, float cost) {
+        synchronized (meetingLock) {
+            if (cost < bestCost) {
+                bestCost = cost;
+                meetingNode = node;
+            }
+        }
+    }
+
+    /** One search direction; the backward one follows edges against their direction */
+    private class Frontier {
+
+        private SearchContext context = new SearchContext(width, height);
+        /** Cost of every reached node, as generation in the high and float bits in the low word */
+        private AtomicLongArray published = new AtomicLongArray(width * height);
+        private long generation;
+        private Frontier other;
+        private boolean reverse;
+        private int target;
+        private int maxDepth;
+        private int expanded;
+        private int generated;
+        private int reopened;
+        private int peakOpen;
+
+        private void begin(int origin, int target) {
+            this.target = target;
+            maxDepth = 0;
+            expanded = 0;
+            generated = 0;
+            reopened = 0;
+            peakOpen = 1;
+            generation++;
+            context.reset();
+            context.setNode(origin, 0, 0, SearchContext.NO_PARENT, 0);
+            context.getOpen().add(origin, 0);
+            publish(origin, 0);
+        }
+
+        private void publish(int node, float cost) {
+            published.set(node, (generation << 32) | (Float.floatToRawIntBits(cost) & 0xffffffffL));
+        }
+
+        private float getPublished(int node) {
+            long value = published.get(node);
+            if ((value >>> 32) != generation) {
+                return Float.MAX_VALUE;
+            }
+            return Float.intBitsToFloat((int) value);
+        }
+
+        /** Expand the best open node, or finish the whole search when no better join is possible */
+        private void step() {
+            OpenList open = context.getOpen();
+            if (open.isEmpty() || maxDepth >= maxSearchDistance || open.getKey(open.peek()) >= bestCost) {
+                finished = true;
+                return;
+            }
+            int current = open.poll();
+            expanded++;
+            context.setClosed(current, true);
+            int cx = current % width;
+            int cy = current / width;
+            float currentCost = context.getCost(current);
+            int depth = context.getDepth(current) + 1;
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if ((x == 0) && (y == 0)) {
+                        continue;
+                    }
+                    if (!allowDiagMovement && (x != 0) && (y != 0)) {
+                        continue;
+                    }
+                    int xp = cx + x;
+                    int yp = cy + y;
+                    if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height)) {
+                        continue;
+                    }
+                    int neighbour = yp * width + xp;
+                    if ((neighbour != start) && (passability != null
+                            ? passability.blocked(passabilityClass, neighbour) : map.blocked(mover, xp, yp))) {
+                        continue;
+                    }
+                    float stepCost = reverse ? map.getCost(mover, xp, yp, cx, cy) : map.getCost(mover, cx, cy, xp, yp);
+                    float nextStepCost = currentCost + stepCost;
+                    map.pathFinderVisited(xp, yp);
+
+                    if (!context.isSeen(neighbour)) {
+                        float h = heuristic.getCost(map, mover, xp, yp, target % width, target / width);
+                        context.setNode(neighbour, nextStepCost, h, current, depth);
+                        context.getOpen().add(neighbour, context.getF(neighbour), h);
+                        generated++;
+                    } else if (nextStepCost < context.getCost(neighbour)) {
+                        context.relax(neighbour, nextStepCost, current, depth);
+                        if (context.getOpen().contains(neighbour)) {
+                            context.getOpen().decreaseKey(neighbour, context.getF(neighbour));
+                        } else {
+                            context.setClosed(neighbour, false);
+                            context.getOpen().add(neighbour, context.getF(neighbour), context.getHeuristic(neighbour));
+                            reopened++;
+                        }
+                    } else {
+                        continue;
+                    }
+                    maxDepth = Math.max(maxDepth, depth);
+                    publish(neighbour, nextStepCost);
+                    float otherCost = other.getPublished(neighbour);
+                    if (otherCost != Float.MAX_VALUE && nextStepCost + otherCost < bestCost) {
+                        meet(neighbour, nextStepCost + otherCost);
+                    }
+                }
+            }
+            peakOpen = Math.max(peakOpen, open.size());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue (Dial's algorithm) of node indices with small non-negative integer
+ * keys. Every key owns a bucket holding a doubly linked list threaded through two
+ * arrays indexed by node, so add, remove and decrease-key are O(1). poll scans
+ * forward from the smallest occupied bucket; with A* and a consistent heuristic the
+ * smallest key never decreases, so the scans sum to the largest key reached.
+ *
+ * Nodes within a bucket come out last in, first out, which favours the deeper of two
+ * nodes with equal f in the same way a tie-break on h does.
+ */
+public class BucketOpenList {
+
+    private static final int NONE = -1;
+
+    private int[] buckets;
+    private int[] next;
+    private int[] previous;
+    private int[] keys;
+    private int size;
+    private int lowest;
+    private int highest;
+
+    /**
+     * @param capacity number of distinct node indices, usually width * height
+     */
+    public BucketOpenList(int capacity) {
+        buckets = new int[64];
+        Arrays.fill(buckets, NONE);
+        next = new int[capacity];
+        previous = new int[capacity];
+        keys = new int[capacity];
+        Arrays.fill(keys, NONE);
+        lowest = buckets.length;
+        highest = NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return keys[node] != NONE;
+    }
+
+    public int getKey(int node) {
+        return keys[node];
+    }
+
+    /** Remove all nodes, in time proportional to the range of keys in use */
+    public void clear() {
+        for (int key = lowest; key <= highest; key++) {
+            for (int node = buckets[key]; node != NONE; node = next[node]) {
+                keys[node] = NONE;
+            }
+            buckets[key] = NONE;
+        }
+        size = 0;
+        lowest = buckets.length;
+        highest = NONE;
+    }
+
+    public void add(int node, int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key " + key);
+        }
+        if (key >= buckets.length) {
+            int length = buckets.length;
+            buckets = Arrays.copyOf(buckets, Math.max(2 * length, key + 1));
+            Arrays.fill(buckets, length, buckets.length, NONE);
+        }
+        int first = buckets[key];
+        next[node] = first;
+        previous[node] = NONE;
+        if (first != NONE) {
+            previous[first] = node;
+        }
+        buckets[key] = node;
+        keys[node] = key;
+        size++;
+        lowest = Math.min(lowest, key);
+        highest = Math.max(highest, key);
+    }
+
+    /**
+     * Move a queued node to a new key
+     * @param node node already in the list
+     * @param key new key
+     */
+    public void decreaseKey(int node, int key) {
+        remove(node);
+        add(node, key);
+    }
+
+    /** @return node with the smallest key, removed from the list */
+    public int poll() {
+        while (buckets[lowest] == NONE) {
+            lowest++;
+        }
+        int top = buckets[lowest];
+        remove(top);
+        return top;
+    }
+
+    public void remove(int node) {
+        int key = keys[node];
+        if (previous[node] == NONE) {
+            buckets[key] = next[node];
+        } else {
+            next[previous[node]] = next[node];
+        }
+        if (next[node] != NONE) {
+            previous[next[node]] = previous[node];
+        }
+        keys[node] = NONE;
+        size--;
+        if (size == 0) {
+            lowest = buckets.length;
+            highest = NONE;
+        }
+    }
+}
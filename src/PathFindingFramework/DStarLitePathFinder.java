@@ -0,0 +1,258 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Incremental planner (D* Lite). The search runs backwards from the target, so when
+ * the mover advances and tiles change only the vertices whose costs are affected are
+ * repaired on the next query instead of searching again from scratch.
+ *
+ * Register the finder with GameMap.addMapChangeListener. The search tree is kept as
+ * long as queries use the same mover and target; any other query starts a new one.
+ */
+public class DStarLitePathFinder implements PathFinder, MapChangeListener {
+
+    private static final float INFINITY = Float.POSITIVE_INFINITY;
+
+    private TileBasedMap map;
+    private int width;
+    private int height;
+    private int maxSearchDistance;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private float[] g;
+    private float[] rhs;
+    private OpenList open;
+    private BitSet changed;
+    private int[] changedTiles;
+    private int changedCount;
+    private Mover mover;
+    private int start = -1;
+    private int goal = -1;
+    private int last;
+    private float km;
+
+    public DStarLitePathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+        this(map, maxSearchDistance, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement));
+    }
+
+    public DStarLitePathFinder(TileBasedMap map, int maxSearchDistance,
+            boolean allowDiagMovement, AStarHeuristic heuristic) {
+        this.map = map;
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.maxSearchDistance = maxSearchDistance;
+        this.allowDiagMovement = allowDiagMovement;
+        this.heuristic = heuristic;
+        g = new float[width * height];
+        rhs = new float[width * height];
+        open = new OpenList(width * height);
+        changed = new BitSet(width * height);
+        changedTiles = new int[16];
+    }
+
+    @Override
+    public void tileChanged(int x, int y) {
+        int index = y * width + x;
+        if (goal < 0 || changed.get(index)) {
+            return;
+        }
+        changed.set(index);
+        if (changedCount == changedTiles.length) {
+            changedTiles = Arrays.copyOf(changedTiles, changedCount * 2);
+        }
+        changedTiles[changedCount++] = index;
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        if (map.blocked(mover, tx, ty)) {
+            return null;
+        }
+        int target = ty * width + tx;
+        start = sy * width + sx;
+        if (start == target) {
+            return null;
+        }
+
+        if (target != goal || !mover.equals(this.mover)) {
+            initialize(mover, target);
+        } else {
+            km += heuristic(last, start);
+            last = start;
+            repairChangedTiles();
+        }
+        computeShortestPath();
+
+        return extractPath();
+    }
+
+    private void initialize(Mover mover, int target) {
+        this.mover = mover;
+        goal = target;
+        last = start;
+        km = 0;
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        open.clear();
+        discardChangedTiles();
+        rhs[goal] = 0;
+        open.add(goal, heuristic(start, goal), 0);
+    }
+
+    /** A changed tile alters the cost of every edge entering it */
+    private void repairChangedTiles() {
+        for (int i = 0; i < changedCount; i++) {
+            int tile = changedTiles[i];
+            int x = tile % width;
+            int y = tile / width;
+            updateVertex(tile);
+            for (int dx = -1; dx < 2; dx++) {
+                for (int dy = -1; dy < 2; dy++) {
+                    if (isNeighbour(x, y, dx, dy)) {
+                        updateVertex((y + dy) * width + x + dx);
+                    }
+                }
+            }
+        }
+        discardChangedTiles();
+    }
+
+    private void discardChangedTiles() {
+        for (int i = 0; i < changedCount; i++) {
+            changed.clear(changedTiles[i]);
+        }
+        changedCount = 0;
+    }
+
+    private void computeShortestPath() {
+        while (!open.isEmpty()) {
+            int u = open.peek();
+            float startKey = key(start);
+            float startTie = Math.min(g[start], rhs[start]);
+            boolean topBelowStart = open.getKey(u) < startKey
+                    || (open.getKey(u) == startKey && open.getTieKey(u) < startTie);
+            if (!topBelowStart && rhs[start] == g[start]) {
+                break;
+            }
+
+            float newKey = key(u);
+            float newTie = Math.min(g[u], rhs[u]);
+            if (open.getKey(u) < newKey || (open.getKey(u) == newKey && open.getTieKey(u) < newTie)) {
+                open.update(u, newKey, newTie);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                open.poll();
+                updateNeighbours(u);
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u);
+                updateNeighbours(u);
+            }
+        }
+    }
+
+    private void updateNeighbours(int u) {
+        int x = u % width;
+        int y = u / width;
+        for (int dx = -1; dx < 2; dx++) {
+            for (int dy = -1; dy < 2; dy++) {
+                if (isNeighbour(x, y, dx, dy)) {
+                    updateVertex((y + dy) * width + x + dx);
+                }
+            }
+        }
+    }
+
+    private void updateVertex(int u) {
+        if (u != goal) {
+            float best = INFINITY;
+            int x = u % width;
+            int y = u / width;
+            for (int dx = -1; dx < 2; dx++) {
+                for (int dy = -1; dy < 2; dy++) {
+                    if (isNeighbour(x, y, dx, dy)) {
+                        best = Math.min(best, cost(x, y, x + dx, y + dy) + g[(y + dy) * width + x + dx]);
+                    }
+                }
+            }
+            rhs[u] = best;
+        }
+        boolean queued = open.contains(u);
+        if (g[u] != rhs[u]) {
+            if (queued) {
+                open.update(u, key(u), Math.min(g[u], rhs[u]));
+            } else {
+                open.add(u, key(u), Math.min(g[u], rhs[u]));
+            }
+        } else if (queued) {
+            open.remove(u);
+        }
+    }
+
+    /** Follow the cheapest successor from the start; the tree already holds the costs to the goal */
+    private Path extractPath() {
+        if (g[start] == INFINITY) {
+            return null;
+        }
+        Path path = new Path();
+        int current = start;
+        int depth = 0;
+
+        while (current != goal) {
+            int x = current % width;
+            int y = current / width;
+            int next = -1;
+            float best = INFINITY;
+            for (int dx = -1; dx < 2; dx++) {
+                for (int dy = -1; dy < 2; dy++) {
+                    if (isNeighbour(x, y, dx, dy)) {
+                        float c = cost(x, y, x + dx, y + dy) + g[(y + dy) * width + x + dx];
+                        if (c < best) {
+                            best = c;
+                            next = (y + dy) * width + x + dx;
+                        }
+                    }
+                }
+            }
+            if (next < 0 || ++depth > maxSearchDistance) {
+                return null;
+            }
+            map.pathFinderVisited(next % width, next / width);
+            path.appendStep(x, y, SearchContext.direction(x, y, next % width, next / width));
+            current = next;
+        }
+        path.appendStep(goal % width, goal / width, null);
+
+        return path;
+    }
+
+    private boolean isNeighbour(int x, int y, int dx, int dy) {
+        if ((dx == 0) && (dy == 0)) {
+            return false;
+        }
+        if (!allowDiagMovement && (dx != 0) && (dy != 0)) {
+            return false;
+        }
+        int xp = x + dx;
+        int yp = y + dy;
+        return (xp >= 0) && (yp >= 0) && (xp < width) && (yp < height);
+    }
+
+    /** Cost of moving from one tile into an adjacent one; only the entered tile may block it */
+    private float cost(int x, int y, int xp, int yp) {
+        if (map.blocked(mover, xp, yp)) {
+            return INFINITY;
+        }
+        return map.getCost(mover, x, y, xp, yp);
+    }
+
+    private float key(int u) {
+        return Math.min(g[u], rhs[u]) + heuristic(start, u) + km;
+    }
+
+    private float heuristic(int from, int to) {
+        return heuristic.getCost(map, mover, to % width, to / width, from % width, from / width);
+    }
+}
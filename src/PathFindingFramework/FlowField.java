@@ -0,0 +1,199 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+
+/**
+ * Distances from every tile to one target, computed with a single reverse Dijkstra
+ * search. Any number of movers sharing the target can then read their next step in
+ * O(1) instead of running their own search.
+ */
+public class FlowField {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int NONE = -1;
+
+    private TileBasedMap map;
+    private PassabilityMap passability;
+    private int passabilityClass;
+    private Mover mover;
+    private int width;
+    private int height;
+    private int target;
+    private boolean allowDiagMovement;
+    private int[] distance;
+    private int[] next;
+    private float[] cost;
+    private OpenList open;
+
+    public FlowField(TileBasedMap map, Mover mover, int tx, int ty, boolean allowDiagMovement) {
+        this.map = map;
+        this.mover = mover;
+        if (map instanceof PassabilityMap) {
+            passability = (PassabilityMap) map;
+            passabilityClass = passability.getPassabilityClass(mover);
+        }
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.target = ty * width + tx;
+        this.allowDiagMovement = allowDiagMovement;
+        distance = new int[width * height];
+        next = new int[width * height];
+        cost = new float[width * height];
+        open = new OpenList(width * height);
+        rebuild();
+    }
+
+    /** Recompute the field for the current state of the map, reusing its arrays */
+    public void rebuild() {
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(next, NONE);
+        Arrays.fill(cost, Float.MAX_VALUE);
+        open.clear();
+        if (map.blocked(mover, target % width, target / width)) {
+            return;
+        }
+        cost[target] = 0;
+        open.add(target, 0);
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            int cx = current % width;
+            int cy = current / width;
+            distance[current] = (int) cost[current];
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if (!isNeighbour(cx, cy, x, y)) {
+                        continue;
+                    }
+                    int xp = cx + x;
+                    int yp = cy + y;
+                    int neighbour = yp * width + xp;
+                    if (distance[neighbour] != UNREACHABLE || isBlocked(xp, yp, neighbour)) {
+                        continue;
+                    }
+                    float nextCost = cost[current] + map.getCost(mover, xp, yp, cx, cy);
+                    if (nextCost < cost[neighbour]) {
+                        cost[neighbour] = nextCost;
+                        next[neighbour] = current;
+                        if (open.contains(neighbour)) {
+                            open.decreaseKey(neighbour, nextCost);
+                        } else {
+                            open.add(neighbour, nextCost);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public int getTargetX() {
+        return target % width;
+    }
+
+    public int getTargetY() {
+        return target / width;
+    }
+
+    public Mover getMover() {
+        return mover;
+    }
+
+    /** @return cost of the cheapest path from the tile to the target, or UNREACHABLE */
+    public int getDistance(int x, int y) {
+        return distance[y * width + x];
+    }
+
+    public boolean isReachable(int x, int y) {
+        return nextIndex(x, y) != NONE || y * width + x == target;
+    }
+
+    /** @return direction of the first step towards the target, or null at the target and on unreachable tiles */
+    public PathFinder.Action getNextAction(int x, int y) {
+        int step = nextIndex(x, y);
+        if (step == NONE) {
+            return null;
+        }
+        return SearchContext.direction(x, y, step % width, step / width);
+    }
+
+    public int getNextX(int x, int y) {
+        int step = nextIndex(x, y);
+        return step == NONE ? NONE : step % width;
+    }
+
+    public int getNextY(int x, int y) {
+        int step = nextIndex(x, y);
+        return step == NONE ? NONE : step / width;
+    }
+
+    /**
+     * Follow the field from a tile to the target
+     * @return path in the same form as PathFinder.findPath, or null if the target is not reachable
+     */
+    public Path getPath(int sx, int sy) {
+        int current = sy * width + sx;
+        if (current == target || nextIndex(sx, sy) == NONE) {
+            return null;
+        }
+        Path path = new Path();
+        while (current != target) {
+            int x = current % width;
+            int y = current / width;
+            int step = nextIndex(x, y);
+            path.appendStep(x, y, SearchContext.direction(x, y, step % width, step / width));
+            current = step;
+        }
+        path.appendStep(target % width, target / width, null);
+        return path;
+    }
+
+    /**
+     * Next tile towards the target. Blocked tiles are not part of the field, but a mover
+     * standing on one may still leave it, so for them the best neighbour is picked here.
+     */
+    private int nextIndex(int x, int y) {
+        int index = y * width + x;
+        if (next[index] != NONE || index == target || !map.blocked(mover, x, y)) {
+            return next[index];
+        }
+        int best = NONE;
+        float bestCost = Float.MAX_VALUE;
+        for (int dx = -1; dx < 2; dx++) {
+            for (int dy = -1; dy < 2; dy++) {
+                if (!isNeighbour(x, y, dx, dy)) {
+                    continue;
+                }
+                int neighbour = (y + dy) * width + x + dx;
+                if (distance[neighbour] == UNREACHABLE) {
+                    continue;
+                }
+                float total = cost[neighbour] + map.getCost(mover, x, y, x + dx, y + dy);
+                if (total < bestCost) {
+                    bestCost = total;
+                    best = neighbour;
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean isBlocked(int x, int y, int index) {
+        if (passability != null) {
+            return passability.blocked(passabilityClass, index);
+        }
+        return map.blocked(mover, x, y);
+    }
+
+    private boolean isNeighbour(int x, int y, int dx, int dy) {
+        if ((dx == 0) && (dy == 0)) {
+            return false;
+        }
+        if (!allowDiagMovement && (dx != 0) && (dy != 0)) {
+            return false;
+        }
+        int xp = x + dx;
+        int yp = y + dy;
+        return (xp >= 0) && (yp >= 0) && (xp < width) && (yp < height);
+    }
+}
@@ -0,0 +1,726 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hierarchical path finder (HPA*). The map is split into square clusters; walkable
+ * runs along each shared cluster border become entrances, and the costs between the
+ * entrances of one cluster are precomputed. A query searches this small abstract
+ * graph and then refines every abstract edge into tiles with a search bounded to a
+ * single cluster.
+ *
+ * An abstract graph is kept for every distinct mover (compared with equals), since
+ * what is blocked depends on the mover. Register the finder with
+ * GameMap.addMapChangeListener so that only clusters around changed tiles are
+ * rebuilt. Move costs are assumed to be symmetric. Entrances are straight border
+ * crossings, plus diagonal ones with diagonal movement where a border has no straight
+ * crossing nearby. With diagonal movement the corner tiles of two clusters touching
+ * only at a corner are an entrance too.
+ *
+ * As in AStarPathFinder the start tile itself may be blocked. Besides the entrances of
+ * its own cluster, the start is linked to every open neighbour across a cluster border,
+ * so a start on a border can leave through it directly. The refined path is smoothed by
+ * replacing overlapping windows of steps with the best path within their bounding box,
+ * which removes the detours through distant entrances that a pure abstract path takes.
+ */
+public class HierarchicalPathFinder implements PathFinder, MapChangeListener {
+
+    public static final int DEFAULT_CLUSTER_SIZE = 10;
+    /** Border runs at least this long get an entrance at both ends instead of one in the middle */
+    private static final int LONG_ENTRANCE = 6;
+    private static final float UNREACHABLE = Float.MAX_VALUE;
+    /** Length in cluster sizes of the windows of steps the refined path is smoothed in */
+    private static final int SMOOTHING_WINDOW = 4;
+
+    private TileBasedMap map;
+    private int width;
+    private int height;
+    private int clusterSize;
+    private int clustersX;
+    private int clustersY;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private SearchContext local;
+    private SearchContext abstractContext;
+    private Map<Mover, AbstractGraph> graphs = new HashMap<Mover, AbstractGraph>();
+    /** Open neighbour of the start, across a border, that the abstract path leaves through, by first abstract node */
+    private Map<Integer, Integer> startExits = new HashMap<Integer, Integer>();
+
+    public HierarchicalPathFinder(TileBasedMap map, boolean allowDiagMovement) {
+        this(map, DEFAULT_CLUSTER_SIZE, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement));
+    }
+
+    public HierarchicalPathFinder(TileBasedMap map, int clusterSize, boolean allowDiagMovement) {
+        this(map, clusterSize, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement));
+    }
+
+    public HierarchicalPathFinder(TileBasedMap map, int clusterSize,
+            boolean allowDiagMovement, AStarHeuristic heuristic) {
+        this.map = map;
+        this.width = map.getWidthInTiles();
+        this.height = map.getHeightInTiles();
+        this.clusterSize = clusterSize;
+        this.clustersX = (width + clusterSize - 1) / clusterSize;
+        this.clustersY = (height + clusterSize - 1) / clusterSize;
+        this.allowDiagMovement = allowDiagMovement;
+        this.heuristic = heuristic;
+        this.local = new SearchContext(map);
+        this.abstractContext = new SearchContext(map);
+    }
+
+    @Override
+    public void tileChanged(int x, int y) {
+        int cluster = clusterOf(x, y);
+        for (AbstractGraph graph : graphs.values()) {
+            graph.dirty.set(cluster);
+        }
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        if (map.blocked(mover, tx, ty)) {
+            return null;
+        }
+        int start = sy * width + sx;
+        int goal = ty * width + tx;
+        if (start == goal) {
+            return null;
+        }
+        AbstractGraph graph = getGraph(mover);
+
+        int startCluster = clusterOf(sx, sy);
+        int goalCluster = clusterOf(tx, ty);
+        int[] startEntrances = graph.entrances[startCluster];
+        int[] goalEntrances = graph.entrances[goalCluster];
+
+        clusterSearch(mover, start, -1, startCluster, true);
+        float[] startCosts = costsTo(startEntrances);
+        float directCost = startCluster == goalCluster ? local.getCost(goal) : UNREACHABLE;
+        int[] exits = startExits(mover, sx, sy, startCluster);
+        float[][] exitCosts = new float[exits.length][];
+        float[] exitGoalCosts = new float[exits.length];
+        for (int i = 0; i < exits.length; i++) {
+            int exitCluster = clusterOf(exits[i] % width, exits[i] / width);
+            clusterSearch(mover, exits[i], -1, exitCluster, false);
+            exitCosts[i] = costsTo(graph.entrances[exitCluster]);
+            exitGoalCosts[i] = exitCluster == goalCluster ? local.getCost(goal) : UNREACHABLE;
+        }
+        clusterSearch(mover, goal, -1, goalCluster, false);
+        float[] goalCosts = costsTo(goalEntrances);
+        startExits.clear();
+
+        SearchContext ctx = abstractContext;
+        OpenList open = ctx.getOpen();
+        ctx.reset();
+        ctx.setNode(start, 0, 0, SearchContext.NO_PARENT, 0);
+        open.add(start, 0);
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            if (current == goal) {
+                break;
+            }
+            ctx.setClosed(current, true);
+            float cost = ctx.getCost(current);
+
+            if (current == start) {
+                for (int i = 0; i < startEntrances.length; i++) {
+                    relax(mover, current, startEntrances[i], cost + startCosts[i], goal);
+                }
+                relax(mover, current, goal, cost + directCost, goal);
+                for (int i = 0; i < exits.length; i++) {
+                    int exit = exits[i];
+                    float step = cost + map.getCost(mover, sx, sy, exit % width, exit / width);
+                    int[] entrances = graph.entrances[clusterOf(exit % width, exit / width)];
+                    for (int j = 0; j < entrances.length; j++) {
+                        if (relax(mover, current, entrances[j], step + exitCosts[i][j], goal)) {
+                            startExits.put(entrances[j], exit);
+                        }
+                    }
+                    if (relax(mover, current, goal, step + exitGoalCosts[i], goal)) {
+                        startExits.put(goal, exit);
+                    }
+                }
+            }
+            int slot = graph.slot[current];
+            if (slot < 0) {
+                continue;
+            }
+            int cluster = clusterOf(current % width, current / width);
+            int[] entrances = graph.entrances[cluster];
+            float[] distances = graph.distances[cluster];
+            for (int j = 0; j < entrances.length; j++) {
+                relax(mover, current, entrances[j], cost + distances[slot * entrances.length + j], goal);
+            }
+            if (cluster == goalCluster) {
+                relax(mover, current, goal, cost + goalCosts[slot], goal);
+            }
+            int cx = cluster % clustersX;
+            int cy = cluster / clustersX;
+            relaxPartners(mover, graph, current, cost, verticalBorder(cx - 1, cy), goal);
+            relaxPartners(mover, graph, current, cost, verticalBorder(cx, cy), goal);
+            relaxPartners(mover, graph, current, cost, horizontalBorder(cx, cy - 1), goal);
+            relaxPartners(mover, graph, current, cost, horizontalBorder(cx, cy), goal);
+            relaxPartners(mover, graph, current, cost, fallingCorner(cx - 1, cy - 1), goal);
+            relaxPartners(mover, graph, current, cost, fallingCorner(cx, cy), goal);
+            relaxPartners(mover, graph, current, cost, risingCorner(cx - 1, cy), goal);
+            relaxPartners(mover, graph, current, cost, risingCorner(cx, cy - 1), goal);
+        }
+
+        if (ctx.getParent(goal) == SearchContext.NO_PARENT) {
+            return null;
+        }
+        return refine(mover, start, goal);
+    }
+
+    private void relaxPartners(Mover mover, AbstractGraph graph, int current, float cost, int border, int goal) {
+        if (border < 0) {
+            return;
+        }
+        int[] pairs = graph.borders[border];
+        for (int i = 0; i < pairs.length; i += 2) {
+            int partner = -1;
+            if (pairs[i] == current) {
+                partner = pairs[i + 1];
+            } else if (pairs[i + 1] == current) {
+                partner = pairs[i];
+            }
+            if (partner >= 0) {
+                float step = map.getCost(mover, current % width, current / width, partner % width, partner / width);
+                relax(mover, current, partner, cost + step, goal);
+            }
+        }
+    }
+
+    /** @return true if the node was reached at a lower cost than before */
+    private boolean relax(Mover mover, int current, int node, float cost, int goal) {
+        if (cost >= UNREACHABLE) {
+            return false;
+        }
+        SearchContext ctx = abstractContext;
+        OpenList open = ctx.getOpen();
+        if (!ctx.isSeen(node)) {
+            float h = heuristic.getCost(map, mover, node % width, node / width, goal % width, goal / width);
+            ctx.setNode(node, cost, h, current, ctx.getDepth(current) + 1);
+            open.add(node, ctx.getF(node));
+            return true;
+        }
+        if (cost >= ctx.getCost(node)) {
+            return false;
+        }
+        ctx.relax(node, cost, current, ctx.getDepth(current) + 1);
+        if (open.contains(node)) {
+            open.decreaseKey(node, ctx.getF(node));
+        } else {
+            ctx.setClosed(node, false);
+            open.add(node, ctx.getF(node));
+        }
+        return true;
+    }
+
+    /** @return open neighbours of the start that lie in another cluster */
+    private int[] startExits(Mover mover, int sx, int sy, int startCluster) {
+        int[] exits = new int[8];
+        int count = 0;
+        for (int x = -1; x < 2; x++) {
+            for (int y = -1; y < 2; y++) {
+                if ((x == 0) && (y == 0)) {
+                    continue;
+                }
+                if (!allowDiagMovement && (x != 0) && (y != 0)) {
+                    continue;
+                }
+                int xp = sx + x;
+                int yp = sy + y;
+                if ((xp < 0) || (yp < 0) || (xp >= width) || (yp >= height)) {
+                    continue;
+                }
+                if (clusterOf(xp, yp) != startCluster && !map.blocked(mover, xp, yp)) {
+                    exits[count++] = yp * width + xp;
+                }
+            }
+        }
+        return Arrays.copyOf(exits, count);
+    }
+
+    /** Turn the abstract path into tiles, one cluster-bounded search per abstract edge */
+    private Path refine(Mover mover, int start, int goal) {
+        int[] abstractPath = new int[abstractContext.getDepth(goal) + 1];
+        int node = goal;
+        for (int i = abstractPath.length - 1; i >= 0; i--) {
+            abstractPath[i] = node;
+            node = abstractContext.getParent(node);
+        }
+
+        TileList tiles = new TileList();
+        tiles.add(start);
+        for (int i = 1; i < abstractPath.length; i++) {
+            int from = abstractPath[i - 1];
+            int to = abstractPath[i];
+            if (from == start && startExits.containsKey(to)) {
+                int exit = startExits.get(to);
+                tiles.add(exit);
+                if (exit != to) {
+                    clusterSearch(mover, exit, to, clusterOf(exit % width, exit / width), false);
+                    tiles.addSearched(to);
+                }
+                continue;
+            }
+            int fromCluster = clusterOf(from % width, from / width);
+            if (fromCluster != clusterOf(to % width, to / width)) {
+                tiles.add(to);
+                continue;
+            }
+            clusterSearch(mover, from, to, fromCluster, from == start);
+            tiles.addSearched(to);
+        }
+        smooth(mover, tiles);
+
+        Path path = new Path();
+        for (int i = 0; i < tiles.length; i++) {
+            int x = tiles.tiles[i] % width;
+            int y = tiles.tiles[i] / width;
+            PathFinder.Action action = null;
+            if (i + 1 < tiles.length) {
+                action = SearchContext.direction(x, y, tiles.tiles[i + 1] % width, tiles.tiles[i + 1] / width);
+            }
+            path.appendStep(x, y, action);
+        }
+        return path;
+    }
+
+    /**
+     * Replace every window of steps with the best path between its ends that stays in
+     * the window's bounding box. Windows overlap by half, so any detour up to half a
+     * window long lies wholly inside one of them.
+     */
+    private void smooth(Mover mover, TileList tiles) {
+        int window = SMOOTHING_WINDOW * clusterSize;
+        int i = 0;
+        while (i < tiles.length - 1) {
+            int j = Math.min(tiles.length - 1, i + window);
+            int minX = width;
+            int minY = height;
+            int maxX = 0;
+            int maxY = 0;
+            float cost = 0;
+            for (int k = i; k <= j; k++) {
+                int x = tiles.tiles[k] % width;
+                int y = tiles.tiles[k] / width;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                if (k > i) {
+                    int previous = tiles.tiles[k - 1];
+                    cost += map.getCost(mover, previous % width, previous / width, x, y);
+                }
+            }
+            int target = tiles.tiles[j];
+            boxSearch(mover, tiles.tiles[i], target, minX, minY, maxX, maxY, i == 0);
+            if (local.isSeen(target) && local.getCost(target) < cost) {
+                j = tiles.replace(i, j);
+            }
+            i += Math.max(1, (j - i) / 2);
+        }
+    }
+
+    /**
+     * Search that never leaves one cluster. With a target it runs A*, otherwise
+     * Dijkstra over the whole cluster; results are read back from the local context.
+     */
+    private void clusterSearch(Mover mover, int origin, int target, int cluster, boolean originExempt) {
+        int minX = (cluster % clustersX) * clusterSize;
+        int minY = (cluster / clustersX) * clusterSize;
+        int maxX = Math.min(width, minX + clusterSize) - 1;
+        int maxY = Math.min(height, minY + clusterSize) - 1;
+        boxSearch(mover, origin, target, minX, minY, maxX, maxY, originExempt);
+    }
+
+    /** Search that never leaves the box between (minX, minY) and (maxX, maxY) inclusive */
+    private void boxSearch(Mover mover, int origin, int target, int minX, int minY, int maxX, int maxY,
+            boolean originExempt) {
+        int ox = origin % width;
+        int oy = origin / width;
+        int tx = target % width;
+        int ty = target / width;
+
+        SearchContext ctx = local;
+        OpenList open = ctx.getOpen();
+        ctx.reset();
+        ctx.setNode(origin, 0, 0, SearchContext.NO_PARENT, 0);
+        open.add(origin, 0);
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            if (current == target) {
+                break;
+            }
+            ctx.setClosed(current, true);
+            int cx = current % width;
+            int cy = current / width;
+            float cost = ctx.getCost(current);
+            int depth = ctx.getDepth(current) + 1;
+
+            for (int x = -1; x < 2; x++) {
+                for (int y = -1; y < 2; y++) {
+                    if ((x == 0) && (y == 0)) {
+                        continue;
+                    }
+                    if (!allowDiagMovement && (x != 0) && (y != 0)) {
+                        continue;
+                    }
+                    int xp = cx + x;
+                    int yp = cy + y;
+                    if ((xp < minX) || (yp < minY) || (xp > maxX) || (yp > maxY)) {
+                        continue;
+                    }
+                    if (((xp != ox) || (yp != oy) || !originExempt) && map.blocked(mover, xp, yp)) {
+                        continue;
+                    }
+                    int neighbour = yp * width + xp;
+                    float nextStepCost = cost + map.getCost(mover, cx, cy, xp, yp);
+                    if (!ctx.isSeen(neighbour)) {
+                        float h = target < 0 ? 0 : heuristic.getCost(map, mover, xp, yp, tx, ty);
+                        ctx.setNode(neighbour, nextStepCost, h, current, depth);
+                        open.add(neighbour, ctx.getF(neighbour));
+                    } else if (nextStepCost < ctx.getCost(neighbour)) {
+                        ctx.relax(neighbour, nextStepCost, current, depth);
+                        if (open.contains(neighbour)) {
+                            open.decreaseKey(neighbour, ctx.getF(neighbour));
+                        } else {
+                            ctx.setClosed(neighbour, false);
+                            open.add(neighbour, ctx.getF(neighbour));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private float[] costsTo(int[] tiles) {
+        float[] costs = new float[tiles.length];
+        for (int i = 0; i < tiles.length; i++) {
+            costs[i] = local.getCost(tiles[i]);
+        }
+        return costs;
+    }
+
+    private AbstractGraph getGraph(Mover mover) {
+        AbstractGraph graph = graphs.get(mover);
+        if (graph == null) {
+            graph = new AbstractGraph();
+            graph.dirty.set(0, clustersX * clustersY);
+            graphs.put(mover, graph);
+        }
+        if (!graph.dirty.isEmpty()) {
+            rebuild(mover, graph);
+        }
+        return graph;
+    }
+
+    /** Recompute borders of dirty clusters, then entrance costs of every cluster whose entrances moved */
+    private void rebuild(Mover mover, AbstractGraph graph) {
+        BitSet changed = new BitSet(clustersX * clustersY);
+        for (int cluster = graph.dirty.nextSetBit(0); cluster >= 0; cluster = graph.dirty.nextSetBit(cluster + 1)) {
+            int cx = cluster % clustersX;
+            int cy = cluster / clustersX;
+            changed.set(cluster);
+            if (updateBorder(mover, graph, verticalBorder(cx - 1, cy), cx - 1, cy, true)) {
+                changed.set(cluster - 1);
+            }
+            if (updateBorder(mover, graph, verticalBorder(cx, cy), cx, cy, true)) {
+                changed.set(cluster + 1);
+            }
+            if (updateBorder(mover, graph, horizontalBorder(cx, cy - 1), cx, cy - 1, false)) {
+                changed.set(cluster - clustersX);
+            }
+            if (updateBorder(mover, graph, horizontalBorder(cx, cy), cx, cy, false)) {
+                changed.set(cluster + clustersX);
+            }
+            if (updateCorner(mover, graph, fallingCorner(cx - 1, cy - 1), cx - 1, cy - 1, true)) {
+                changed.set(cluster - clustersX - 1);
+            }
+            if (updateCorner(mover, graph, fallingCorner(cx, cy), cx, cy, true)) {
+                changed.set(cluster + clustersX + 1);
+            }
+            if (updateCorner(mover, graph, risingCorner(cx - 1, cy), cx - 1, cy, false)) {
+                changed.set(cluster + clustersX - 1);
+            }
+            if (updateCorner(mover, graph, risingCorner(cx, cy - 1), cx, cy - 1, false)) {
+                changed.set(cluster - clustersX + 1);
+            }
+        }
+        graph.dirty.clear();
+
+        for (int cluster = changed.nextSetBit(0); cluster >= 0; cluster = changed.nextSetBit(cluster + 1)) {
+            updateEntrances(graph, cluster);
+        }
+        for (int cluster = changed.nextSetBit(0); cluster >= 0; cluster = changed.nextSetBit(cluster + 1)) {
+            updateDistances(mover, graph, cluster);
+        }
+    }
+
+    /**
+     * Find entrances on the border between cluster (cx, cy) and its right (vertical) or lower neighbour
+     * @return true if the entrances differ from the stored ones
+     */
+    private boolean updateBorder(Mover mover, AbstractGraph graph, int border, int cx, int cy, boolean vertical) {
+        if (border < 0) {
+            return false;
+        }
+        int[] pairs = new int[8];
+        int count = 0;
+        int first = vertical ? cy * clusterSize : cx * clusterSize;
+        int last = Math.min(vertical ? height : width, first + clusterSize) - 1;
+        int line = (vertical ? cx + 1 : cy + 1) * clusterSize - 1;
+        int runStart = -1;
+
+        for (int i = first; i <= last + 1; i++) {
+            boolean open = i <= last && straightOpen(mover, line, i, vertical);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (count + 4 > pairs.length) {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                }
+                if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+                    count = addPair(pairs, count, line, runStart, vertical);
+                    count = addPair(pairs, count, line, runEnd, vertical);
+                } else {
+                    count = addPair(pairs, count, line, (runStart + runEnd) / 2, vertical);
+                }
+                runStart = -1;
+            }
+            if (allowDiagMovement && !open && i < last && !straightOpen(mover, line, i + 1, vertical)) {
+                if (count + 4 > pairs.length) {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                }
+                count = addDiagonalPair(mover, pairs, count, line, i, i + 1, vertical);
+                count = addDiagonalPair(mover, pairs, count, line, i + 1, i, vertical);
+            }
+        }
+        pairs = Arrays.copyOf(pairs, count);
+        if (Arrays.equals(pairs, graph.borders[border])) {
+            return false;
+        }
+        graph.borders[border] = pairs;
+        return true;
+    }
+
+    /**
+     * Find the entrance at the corner where the clusters (cx, cy) and (cx + 1, cy + 1)
+     * (falling) or (cx + 1, cy) and (cx, cy + 1) (rising) touch
+     * @return true if the entrance differs from the stored one
+     */
+    private boolean updateCorner(Mover mover, AbstractGraph graph, int corner, int cx, int cy, boolean falling) {
+        if (corner < 0) {
+            return false;
+        }
+        int x = (cx + 1) * clusterSize - 1;
+        int y = (cy + 1) * clusterSize - 1;
+        int from = falling ? y * width + x : y * width + x + 1;
+        int to = falling ? (y + 1) * width + x + 1 : (y + 1) * width + x;
+        int[] pairs = new int[0];
+        if (!map.blocked(mover, from % width, from / width) && !map.blocked(mover, to % width, to / width)) {
+            pairs = new int[] { from, to };
+        }
+        if (Arrays.equals(pairs, graph.borders[corner])) {
+            return false;
+        }
+        graph.borders[corner] = pairs;
+        return true;
+    }
+
+    private boolean straightOpen(Mover mover, int line, int i, boolean vertical) {
+        return vertical
+                ? !map.blocked(mover, line, i) && !map.blocked(mover, line + 1, i)
+                : !map.blocked(mover, i, line) && !map.blocked(mover, i, line + 1);
+    }
+
+    /**
+     * Add a diagonal crossing from position inside on the line to position across on
+     * the next line, used where neither position has a straight crossing
+     */
+    private int addDiagonalPair(Mover mover, int[] pairs, int count, int line, int inside, int across,
+            boolean vertical) {
+        int from = vertical ? inside * width + line : line * width + inside;
+        int to = vertical ? across * width + line + 1 : (line + 1) * width + across;
+        if (map.blocked(mover, from % width, from / width) || map.blocked(mover, to % width, to / width)) {
+            return count;
+        }
+        pairs[count++] = from;
+        pairs[count++] = to;
+        return count;
+    }
+
+    private int addPair(int[] pairs, int count, int line, int i, boolean vertical) {
+        if (vertical) {
+            pairs[count++] = i * width + line;
+            pairs[count++] = i * width + line + 1;
+        } else {
+            pairs[count++] = line * width + i;
+            pairs[count++] = (line + 1) * width + i;
+        }
+        return count;
+    }
+
+    private void updateEntrances(AbstractGraph graph, int cluster) {
+        int[] previous = graph.entrances[cluster];
+        for (int i = 0; i < previous.length; i++) {
+            graph.slot[previous[i]] = -1;
+        }
+        int cx = cluster % clustersX;
+        int cy = cluster / clustersX;
+        int[] entrances = new int[0];
+        entrances = collect(graph, entrances, cluster, verticalBorder(cx - 1, cy));
+        entrances = collect(graph, entrances, cluster, verticalBorder(cx, cy));
+        entrances = collect(graph, entrances, cluster, horizontalBorder(cx, cy - 1));
+        entrances = collect(graph, entrances, cluster, horizontalBorder(cx, cy));
+        entrances = collect(graph, entrances, cluster, fallingCorner(cx - 1, cy - 1));
+        entrances = collect(graph, entrances, cluster, fallingCorner(cx, cy));
+        entrances = collect(graph, entrances, cluster, risingCorner(cx - 1, cy));
+        entrances = collect(graph, entrances, cluster, risingCorner(cx, cy - 1));
+        graph.entrances[cluster] = entrances;
+    }
+
+    private int[] collect(AbstractGraph graph, int[] entrances, int cluster, int border) {
+        if (border < 0) {
+            return entrances;
+        }
+        int[] pairs = graph.borders[border];
+        for (int i = 0; i < pairs.length; i++) {
+            int tile = pairs[i];
+            if (graph.slot[tile] < 0 && clusterOf(tile % width, tile / width) == cluster) {
+                graph.slot[tile] = entrances.length;
+                entrances = Arrays.copyOf(entrances, entrances.length + 1);
+                entrances[entrances.length - 1] = tile;
+            }
+        }
+        return entrances;
+    }
+
+    private void updateDistances(Mover mover, AbstractGraph graph, int cluster) {
+        int[] entrances = graph.entrances[cluster];
+        int n = entrances.length;
+        float[] distances = new float[n * n];
+        for (int i = 0; i < n; i++) {
+            clusterSearch(mover, entrances[i], -1, cluster, false);
+            for (int j = 0; j < n; j++) {
+                distances[i * n + j] = i == j ? UNREACHABLE : local.getCost(entrances[j]);
+            }
+        }
+        graph.distances[cluster] = distances;
+    }
+
+    private int clusterOf(int x, int y) {
+        return (y / clusterSize) * clustersX + (x / clusterSize);
+    }
+
+    /** @return id of the border between cluster (cx, cy) and (cx + 1, cy), or -1 if there is none */
+    private int verticalBorder(int cx, int cy) {
+        if (cx < 0 || cx >= clustersX - 1 || cy < 0 || cy >= clustersY) {
+            return -1;
+        }
+        return cy * clustersX + cx;
+    }
+
+    /** @return id of the border between cluster (cx, cy) and (cx, cy + 1), or -1 if there is none */
+    private int horizontalBorder(int cx, int cy) {
+        if (cx < 0 || cx >= clustersX || cy < 0 || cy >= clustersY - 1) {
+            return -1;
+        }
+        return clustersX * clustersY + cy * clustersX + cx;
+    }
+
+    /**
+     * @return id of the corner between cluster (cx, cy) and (cx + 1, cy + 1), or -1 if
+     *         there is none or diagonal movement is not allowed
+     */
+    private int fallingCorner(int cx, int cy) {
+        if (!allowDiagMovement || cx < 0 || cx >= clustersX - 1 || cy < 0 || cy >= clustersY - 1) {
+            return -1;
+        }
+        return 2 * clustersX * clustersY + cy * clustersX + cx;
+    }
+
+    /**
+     * @return id of the corner between cluster (cx + 1, cy) and (cx, cy + 1), or -1 if
+     *         there is none or diagonal movement is not allowed
+     */
+    private int risingCorner(int cx, int cy) {
+        if (!allowDiagMovement || cx < 0 || cx >= clustersX - 1 || cy < 0 || cy >= clustersY - 1) {
+            return -1;
+        }
+        return 3 * clustersX * clustersY + cy * clustersX + cx;
+    }
+
+    /** Growing list of tiles of a refined path */
+    private class TileList {
+
+        private int[] tiles = new int[16];
+        private int length;
+
+        private void add(int tile) {
+            if (length == tiles.length) {
+                tiles = Arrays.copyOf(tiles, length * 2);
+            }
+            tiles[length++] = tile;
+        }
+
+        /** Append the tiles after the origin of the last local search up to its target */
+        private void addSearched(int target) {
+            int steps = local.getDepth(target);
+            if (length + steps > tiles.length) {
+                tiles = Arrays.copyOf(tiles, Math.max(tiles.length * 2, length + steps));
+            }
+            int tile = target;
+            for (int j = length + steps - 1; j >= length; j--) {
+                tiles[j] = tile;
+                tile = local.getParent(tile);
+            }
+            length += steps;
+        }
+
+        /**
+         * Replace the tiles strictly between from and to with the path of the last local search
+         * @return new index of the tile that was at to
+         */
+        private int replace(int from, int to) {
+            int target = tiles[to];
+            int steps = local.getDepth(target);
+            int[] tail = Arrays.copyOfRange(tiles, to + 1, length);
+            length = from + 1;
+            addSearched(target);
+            for (int tile : tail) {
+                add(tile);
+            }
+            return from + steps;
+        }
+    }
+
+    private class AbstractGraph {
+
+        /** Entrance tile pairs for every border, then for every falling and rising corner */
+        private int[][] borders = new int[4 * clustersX * clustersY][];
+        /** Entrance tiles of every cluster */
+        private int[][] entrances = new int[clustersX * clustersY][];
+        /** Cost between every two entrances of a cluster, row major */
+        private float[][] distances = new float[clustersX * clustersY][];
+        /** Position of a tile in its cluster's entrance list, -1 for other tiles */
+        private int[] slot = new int[width * height];
+        private BitSet dirty = new BitSet(clustersX * clustersY);
+
+        public AbstractGraph() {
+            Arrays.fill(slot, -1);
+            for (int i = 0; i < entrances.length; i++) {
+                entrances[i] = new int[0];
+                distances[i] = new float[0];
+            }
+        }
+    }
+}
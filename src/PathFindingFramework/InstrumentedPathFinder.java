@@ -0,0 +1,12 @@
+package PathFindingFramework;
+
+/**
+ * Path finder that can report the work of each query into a SearchStats sink
+ */
+public interface InstrumentedPathFinder extends PathFinder {
+
+    /** @param stats sink for the following queries, or null to stop measuring */
+    public void setSearchStats(SearchStats stats);
+
+    public SearchStats getSearchStats();
+}
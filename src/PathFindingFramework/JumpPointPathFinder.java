@@ -0,0 +1,276 @@
+package PathFindingFramework;
+
+
+/**
+ * Jump Point Search for grids where every move has the same cost. Straight and
+ * diagonal runs without forced neighbours are skipped in a single step, so only
+ * the jump points at their ends enter the open list. Diagonal moves follow the
+ * same rules as {@link AStarPathFinder}, which lets them pass between two blocked
+ * tiles.
+ */
+public class JumpPointPathFinder implements InstrumentedPathFinder {
+
+    private static final int NONE = -1;
+
+    private SearchContext context;
+    private TileBasedMap map;
+    private PassabilityMap passability;
+    private int passabilityClass;
+    private int maxSearchDistance;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private Mover mover;
+    private int startIndex;
+    private int goalIndex;
+    private int expandedCount;
+    private SearchStats stats;
+
+    public JumpPointPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+        this(map, maxSearchDistance, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement));
+    }
+
+    public JumpPointPathFinder(TileBasedMap map, int maxSearchDistance,
+            boolean allowDiagMovement, AStarHeuristic heuristic) {
+        this.heuristic = heuristic;
+        this.map = map;
+        this.passability = map instanceof PassabilityMap ? (PassabilityMap) map : null;
+        this.maxSearchDistance = maxSearchDistance;
+        this.allowDiagMovement = allowDiagMovement;
+        this.context = new SearchContext(map);
+    }
+
+    /** @return number of jump points taken from the open list by the last findPath call */
+    public int getExpandedCount() {
+        return expandedCount;
+    }
+
+    @Override
+    public void setSearchStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public SearchStats getSearchStats() {
+        return stats;
+    }
+
+    @Override
+    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+        if (map.blocked(mover, tx, ty)) {
+            return null;
+        }
+        if (passability != null) {
+            passabilityClass = passability.getPassabilityClass(mover);
+        }
+        long startTime = stats == null ? 0 : System.nanoTime();
+        SearchContext ctx = context;
+        OpenList open = ctx.getOpen();
+        this.mover = mover;
+        startIndex = ctx.index(sx, sy);
+        goalIndex = ctx.index(tx, ty);
+
+        ctx.reset();
+        ctx.setNode(startIndex, 0, 0, SearchContext.NO_PARENT, 0);
+        open.add(startIndex, 0);
+
+        int maxDepth = 0;
+        int generated = 0;
+        int reopened = 0;
+        int peakOpen = 1;
+        boolean found = false;
+        expandedCount = 0;
+        while ((maxDepth < maxSearchDistance) && !open.isEmpty()) {
+
+            int current = open.poll();
+            expandedCount++;
+            if (current == goalIndex) {
+                found = true;
+                break;
+            }
+            ctx.setClosed(current, true);
+            int cx = ctx.getX(current);
+            int cy = ctx.getY(current);
+            int dx = 0;
+            int dy = 0;
+            int parent = ctx.getParent(current);
+            if (parent != SearchContext.NO_PARENT) {
+                dx = Integer.signum(cx - ctx.getX(parent));
+                dy = Integer.signum(cy - ctx.getY(parent));
+            }
+
+            for (int direction = 0; direction < 8; direction++) {
+                int ndx = DIRECTION_X[direction];
+                int ndy = DIRECTION_Y[direction];
+                if (!isSuccessorDirection(cx, cy, dx, dy, ndx, ndy)) {
+                    continue;
+                }
+                int jumpPoint = jump(cx, cy, ndx, ndy);
+                if (jumpPoint == NONE) {
+                    continue;
+                }
+                int jx = ctx.getX(jumpPoint);
+                int jy = ctx.getY(jumpPoint);
+                int steps = Math.max(Math.abs(jx - cx), Math.abs(jy - cy));
+                float nextStepCost = ctx.getCost(current) + steps * map.getCost(mover, cx, cy, cx + ndx, cy + ndy);
+                int depth = ctx.getDepth(current) + steps;
+                map.pathFinderVisited(jx, jy);
+
+                if (!ctx.isSeen(jumpPoint)) {
+                    float h = heuristic.getCost(map, mover, jx, jy, tx, ty);
+                    ctx.setNode(jumpPoint, nextStepCost, h, current, depth);
+                    maxDepth = Math.max(maxDepth, depth);
+                    open.add(jumpPoint, ctx.getF(jumpPoint), h);
+                    generated++;
+                } else if (nextStepCost < ctx.getCost(jumpPoint)) {
+                    ctx.relax(jumpPoint, nextStepCost, current, depth);
+                    maxDepth = Math.max(maxDepth, depth);
+                    if (open.contains(jumpPoint)) {
+                        open.decreaseKey(jumpPoint, ctx.getF(jumpPoint));
+                    } else {
+                        ctx.setClosed(jumpPoint, false);
+                        open.add(jumpPoint, ctx.getF(jumpPoint), ctx.getHeuristic(jumpPoint));
+                        reopened++;
+                    }
+                }
+            }
+            peakOpen = Math.max(peakOpen, open.size());
+        }
+        this.mover = null;
+        if (stats != null) {
+            stats.record(expandedCount, generated, reopened, peakOpen, maxDepth,
+                    !found && maxDepth >= maxSearchDistance, System.nanoTime() - startTime);
+        }
+
+        return ctx.buildPath(startIndex, goalIndex);
+    }
+
+    private static final int[] DIRECTION_X = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DIRECTION_Y = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    /**
+     * Pruning rules: from a node reached in direction (dx, dy) only the natural
+     * neighbours and the forced neighbours next to an obstacle are searched.
+     */
+    private boolean isSuccessorDirection(int x, int y, int dx, int dy, int ndx, int ndy) {
+        boolean diagonal = (ndx != 0) && (ndy != 0);
+        if (diagonal && !allowDiagMovement) {
+            return false;
+        }
+        if ((dx == 0) && (dy == 0)) {
+            return true;
+        }
+        if (!allowDiagMovement) {
+            if (dx != 0) {
+                return (ndx == dx) || (ndx == 0);
+            }
+            return (ndy == dy) || (ndy == 0);
+        }
+        if ((dx != 0) && (dy != 0)) {
+            if (((ndx == dx) && (ndy == 0)) || ((ndx == 0) && (ndy == dy)) || ((ndx == dx) && (ndy == dy))) {
+                return true;
+            }
+            return ((ndx == -dx) && (ndy == dy) && !walkable(x - dx, y))
+                    || ((ndx == dx) && (ndy == -dy) && !walkable(x, y - dy));
+        }
+        if (dx != 0) {
+            return (ndx == dx) && ((ndy == 0) || !walkable(x, y + ndy));
+        }
+        return (ndy == dy) && ((ndx == 0) || !walkable(x + ndx, y));
+    }
+
+    private int jump(int x, int y, int dx, int dy) {
+        if (!allowDiagMovement) {
+            return jumpOrthogonal(x, y, dx, dy);
+        }
+        if ((dx != 0) && (dy != 0)) {
+            return jumpDiagonal(x, y, dx, dy);
+        }
+        return jumpStraight(x, y, dx, dy);
+    }
+
+    private int jumpStraight(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!walkable(x, y)) {
+                return NONE;
+            }
+            int index = context.index(x, y);
+            if (index == goalIndex) {
+                return index;
+            }
+            if (dx != 0) {
+                if ((!walkable(x, y + 1) && walkable(x + dx, y + 1))
+                        || (!walkable(x, y - 1) && walkable(x + dx, y - 1))) {
+                    return index;
+                }
+            } else {
+                if ((!walkable(x + 1, y) && walkable(x + 1, y + dy))
+                        || (!walkable(x - 1, y) && walkable(x - 1, y + dy))) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    private int jumpDiagonal(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!walkable(x, y)) {
+                return NONE;
+            }
+            int index = context.index(x, y);
+            if (index == goalIndex) {
+                return index;
+            }
+            if ((!walkable(x - dx, y) && walkable(x - dx, y + dy))
+                    || (!walkable(x, y - dy) && walkable(x + dx, y - dy))) {
+                return index;
+            }
+            if ((jumpStraight(x, y, dx, 0) != NONE) || (jumpStraight(x, y, 0, dy) != NONE)) {
+                return index;
+            }
+        }
+    }
+
+    /** Jump for 4-connected movement; vertical runs stop where a horizontal run finds a jump point */
+    private int jumpOrthogonal(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!walkable(x, y)) {
+                return NONE;
+            }
+            int index = context.index(x, y);
+            if (index == goalIndex) {
+                return index;
+            }
+            if (dx != 0) {
+                if ((walkable(x, y - 1) && !walkable(x - dx, y - 1))
+                        || (walkable(x, y + 1) && !walkable(x - dx, y + 1))) {
+                    return index;
+                }
+            } else {
+                if ((walkable(x - 1, y) && !walkable(x - 1, y - dy))
+                        || (walkable(x + 1, y) && !walkable(x + 1, y - dy))) {
+                    return index;
+                }
+                if ((jumpOrthogonal(x, y, 1, 0) != NONE) || (jumpOrthogonal(x, y, -1, 0) != NONE)) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    private boolean walkable(int x, int y) {
+        if ((x < 0) || (y < 0) || (x >= context.getWidth()) || (y >= context.getHeight())) {
+            return false;
+        }
+        int index = context.index(x, y);
+        if (passability != null) {
+            return (index == startIndex) || !passability.blocked(passabilityClass, index);
+        }
+        return (index == startIndex) || !map.blocked(mover, x, y);
+    }
+}
@@ -0,0 +1,5 @@
+package PathFindingFramework;
+
+public interface MapChangeListener {
+    public void tileChanged(int x, int y);
+}
@@ -0,0 +1,170 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of node indices. Every node index in [0, capacity) owns
+ * a slot in the position table, so membership tests and decrease-key are O(1) and
+ * O(log n) instead of the linear scans of a plain PriorityQueue. Nodes are ordered
+ * by key, then by tie key and finally by node index, so the order never depends on
+ * the order of insertion.
+ */
+public class OpenList {
+
+    private int[] heap;
+    private float[] keys;
+    private float[] tieKeys;
+    private int[] position;
+    private int size;
+
+    /**
+     * @param capacity number of distinct node indices, usually width * height
+     */
+    public OpenList(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        tieKeys = new float[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return position[node] >= 0;
+    }
+
+    public float getKey(int node) {
+        return keys[node];
+    }
+
+    public float getTieKey(int node) {
+        return tieKeys[node];
+    }
+
+    /** Remove all nodes, in time proportional to the number of queued nodes */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    public void add(int node, float key) {
+        add(node, key, 0);
+    }
+
+    public void add(int node, float key, float tieKey) {
+        keys[node] = key;
+        tieKeys[node] = tieKey;
+        heap[size] = node;
+        position[node] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lower the key of a queued node
+     * @param node node already in the list
+     * @param key new key, not greater than the current one
+     */
+    public void decreaseKey(int node, float key) {
+        keys[node] = key;
+        siftUp(position[node]);
+    }
+
+    /**
+     * Change both keys of a queued node, in either direction
+     * @param node node already in the list
+     * @param key new key
+     * @param tieKey new tie key
+     */
+    public void update(int node, float key, float tieKey) {
+        keys[node] = key;
+        tieKeys[node] = tieKey;
+        siftDown(position[node]);
+        siftUp(position[node]);
+    }
+
+    /** @return node with the smallest key, removed from the list */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /** @return node with the smallest key, left in the list */
+    public int peek() {
+        return heap[0];
+    }
+
+    public void remove(int node) {
+        int slot = position[node];
+        position[node] = -1;
+        size--;
+        if (slot == size) {
+            return;
+        }
+        int moved = heap[size];
+        heap[slot] = moved;
+        position[moved] = slot;
+        siftDown(slot);
+        siftUp(position[moved]);
+    }
+
+    private boolean less(int a, int b) {
+        if (keys[a] != keys[b]) {
+            return keys[a] < keys[b];
+        }
+        if (tieKeys[a] != tieKeys[b]) {
+            return tieKeys[a] < tieKeys[b];
+        }
+        return a < b;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!less(node, heap[parent])) {
+                break;
+            }
+            heap[slot] = heap[parent];
+            position[heap[slot]] = slot;
+            slot = parent;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!less(heap[child], node)) {
+                break;
+            }
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
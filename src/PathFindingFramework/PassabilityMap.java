@@ -0,0 +1,15 @@
+package PathFindingFramework;
+
+/**
+ * Map that can answer blocked() for a whole class of movers from a precomputed table.
+ * Path finders look up the class of the mover once per query and then test tiles by
+ * their index y * width + x, without going through the Mover.
+ */
+public interface PassabilityMap extends TileBasedMap {
+
+    /** @return class shared by all movers that are blocked by the same tiles */
+    public int getPassabilityClass(Mover mover);
+
+    /** @return same as blocked(mover, x, y) for a mover of the given class */
+    public boolean blocked(int passabilityClass, int index);
+}
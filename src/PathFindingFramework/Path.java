@@ -1,44 +1,157 @@
 package PathFindingFramework;
 
-import java.util.ArrayList;
-
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Steps kept in parallel arrays of x, y and action codes. Path finders build paths from
+ * the target backwards, so the arrays keep free room in front of the first step and
+ * prependStep is O(1), as is dropping the first step. Membership is answered from a
+ * bitset over the bounding box of the tiles that is rebuilt lazily after the path
+ * changes. Coordinates may be any non-negative int a TileBasedMap can report.
+ */
 public class Path {
 
-    private ArrayList steps = new ArrayList();
+    private static final PathFinder.Action[] ACTIONS = PathFinder.Action.values();
+
+    private int[] xs;
+    private int[] ys;
+    private byte[] actions;
+    private int head;
+    private int tail;
+    private BitSet tiles;
+    private int minX;
+    private int minY;
+    private int stride;
 
     public Path() {
+        xs = new int[16];
+        ys = new int[16];
+        actions = new byte[16];
+        head = xs.length / 2;
+        tail = head;
+    }
+
+    public Path(Path other) {
+        xs = Arrays.copyOfRange(other.xs, other.head, other.tail);
+        ys = Arrays.copyOfRange(other.ys, other.head, other.tail);
+        actions = Arrays.copyOfRange(other.actions, other.head, other.tail);
+        head = 0;
+        tail = other.getLength();
     }
 
     public int getLength() {
-        return steps.size();
+        return tail - head;
     }
 
     public State getStep(int index) {
-        return (State) steps.get(index);
+        return new State(getX(index), getY(index), getAction(index));
     }
 
     public int getX(int index) {
-        return getStep(index).x;
+        return xs[head + index];
     }
 
     public int getY(int index) {
-        return getStep(index).y;
+        return ys[head + index];
+    }
+
+    public PathFinder.Action getAction(int index) {
+        int code = actions[head + index];
+        return code == 0 ? null : ACTIONS[code - 1];
     }
 
     public void appendStep(int x, int y, PathFinder.Action action) {
-        steps.add(new State(x, y, action));
+        if (tail == xs.length) {
+            grow(0, Math.max(xs.length, 8));
+        }
+        set(tail++, x, y, action);
     }
 
     public void prependStep(int x, int y,PathFinder.Action action) {
-        steps.add(0, new State(x, y, action));
+        if (head == 0) {
+            grow(Math.max(xs.length, 8), 0);
+        }
+        set(--head, x, y, action);
     }
-    
+
     public void removeStep(int step) {
-        if(step < steps.size())
-            steps.remove(step);
+        if (step < getLength()) {
+            if (step == 0) {
+                head++;
+            } else {
+                int moved = tail - head - step - 1;
+                System.arraycopy(xs, head + step + 1, xs, head + step, moved);
+                System.arraycopy(ys, head + step + 1, ys, head + step, moved);
+                System.arraycopy(actions, head + step + 1, actions, head + step, moved);
+                tail--;
+            }
+            tiles = null;
+        }
     }
+
     public boolean contains(int x, int y) {
-        return steps.contains(new State(x, y));
+        if (tiles == null && !indexTiles()) {
+            for (int i = head; i < tail; i++) {
+                if (xs[i] == x && ys[i] == y) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        x -= minX;
+        y -= minY;
+        return (x < stride) && (x >= 0) && (y >= 0) && tiles.get(y * stride + x);
+    }
+
+    /** @return false if the bounding box of the tiles is too large for a bitset */
+    private boolean indexTiles() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        int maxX = 0;
+        int maxY = 0;
+        for (int i = head; i < tail; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > Integer.MAX_VALUE) {
+            return false;
+        }
+        stride = maxX - minX + 1;
+        tiles = new BitSet();
+        for (int i = head; i < tail; i++) {
+            tiles.set((ys[i] - minY) * stride + xs[i] - minX);
+        }
+        return true;
+    }
+
+    private void set(int index, int x, int y, PathFinder.Action action) {
+        if ((x < 0) || (y < 0)) {
+            throw new IllegalArgumentException("Step out of range: " + x + ", " + y);
+        }
+        xs[index] = x;
+        ys[index] = y;
+        actions[index] = (byte) (action == null ? 0 : action.ordinal() + 1);
+        tiles = null;
+    }
+
+    /** Reallocate with extra free slots before the first and after the last step */
+    private void grow(int front, int back) {
+        int length = getLength();
+        int size = front + length + back;
+        int[] grownXs = new int[size];
+        int[] grownYs = new int[size];
+        byte[] grownActions = new byte[size];
+        System.arraycopy(xs, head, grownXs, front, length);
+        System.arraycopy(ys, head, grownYs, front, length);
+        System.arraycopy(actions, head, grownActions, front, length);
+        xs = grownXs;
+        ys = grownYs;
+        actions = grownActions;
+        head = front;
+        tail = front + length;
     }
 
     public class State {
@@ -51,7 +164,7 @@ public class Path {
             this.x = x;
             this.y = y;
         }
-        
+
         public State(int x, int y, PathFinder.Action action) {
             this.x = x;
             this.y = y;
@@ -85,4 +198,4 @@ public class Path {
             return false;
         }
     }
-}
\ No newline at end of file
+}
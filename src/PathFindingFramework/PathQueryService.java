@@ -0,0 +1,135 @@
+package PathFindingFramework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Answers path queries on one map concurrently. A query takes an idle AStarPathFinder
+ * and returns it when done, so search state is never shared and there are only as
+ * many finders as queries ever ran at once. Without a pool the service owns one with
+ * a thread per processor. The map must not be modified while queries are running.
+ *
+ * Each finder also keeps its own SearchStats; getSearchStats() sums them.
+ */
+public class PathQueryService {
+
+    private ForkJoinPool pool;
+    private TileBasedMap map;
+    private int maxSearchDistance;
+    private boolean allowDiagMovement;
+    private AStarHeuristic heuristic;
+    private Queue<AStarPathFinder> idleFinders = new ConcurrentLinkedQueue<AStarPathFinder>();
+    private List<SearchStats> finderStats = new CopyOnWriteArrayList<SearchStats>();
+
+    public PathQueryService(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+        this(map, maxSearchDistance, allowDiagMovement, AStarPathFinder.defaultHeuristic(allowDiagMovement),
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    public PathQueryService(TileBasedMap map, int maxSearchDistance,
+            boolean allowDiagMovement, AStarHeuristic heuristic, ForkJoinPool pool) {
+        this.pool = pool;
+        this.map = map;
+        this.maxSearchDistance = maxSearchDistance;
+        this.allowDiagMovement = allowDiagMovement;
+        this.heuristic = heuristic;
+    }
+
+    /** @return future completed with the path, or with null if there is none */
+    public CompletableFuture<Path> submit(Mover mover, int sx, int sy, int tx, int ty) {
+        return submit(new PathQuery(mover, sx, sy, tx, ty));
+    }
+
+    public CompletableFuture<Path> submit(final PathQuery query) {
+        return CompletableFuture.supplyAsync(new Supplier<Path>() {
+            @Override
+            public Path get() {
+                AStarPathFinder finder = idleFinders.poll();
+                if (finder == null) {
+                    finder = newFinder();
+                }
+                try {
+                    return finder.findPath(query.mover, query.sx, query.sy, query.tx, query.ty);
+                } finally {
+                    idleFinders.offer(finder);
+                }
+            }
+        }, pool);
+    }
+
+    /**
+     * Run a batch of queries across the pool
+     * @param queries queries to run
+     * @return futures in the order of the queries
+     */
+    public List<CompletableFuture<Path>> submitAll(List<PathQuery> queries) {
+        List<CompletableFuture<Path>> futures = new ArrayList<CompletableFuture<Path>>(queries.size());
+        for (PathQuery query : queries) {
+            futures.add(submit(query));
+        }
+        return futures;
+    }
+
+    /**
+     * Sum of the statistics of all finders. Only exact once the futures of the
+     * queries have been waited for; counters of busy finders may be read mid-update.
+     */
+    public SearchStats getSearchStats() {
+        SearchStats total = new SearchStats();
+        for (SearchStats stats : finderStats) {
+            total.merge(stats);
+        }
+        return total;
+    }
+
+    private AStarPathFinder newFinder() {
+        AStarPathFinder finder = new AStarPathFinder(map, maxSearchDistance, allowDiagMovement, heuristic);
+        SearchStats stats = new SearchStats();
+        finder.setSearchStats(stats);
+        finderStats.add(stats);
+        return finder;
+    }
+
+    public static class PathQuery {
+
+        private Mover mover;
+        private int sx;
+        private int sy;
+        private int tx;
+        private int ty;
+
+        public PathQuery(Mover mover, int sx, int sy, int tx, int ty) {
+            this.mover = mover;
+            this.sx = sx;
+            this.sy = sy;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        public Mover getMover() {
+            return mover;
+        }
+
+        public int getSx() {
+            return sx;
+        }
+
+        public int getSy() {
+            return sy;
+        }
+
+        public int getTx() {
+            return tx;
+        }
+
+        public int getTy() {
+            return ty;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package PathFindingFramework;
+
+import java.util.Arrays;
+
+/**
+ * Per-node search state kept in parallel primitive arrays indexed by y * width + x.
+ * A node's values are only meaningful while its stamp equals the current generation,
+ * so {@link #reset()} invalidates the whole grid in O(1) and repeated queries on the
+ * same map allocate nothing.
+ */
+public class SearchContext {
+
+    public static final int NO_PARENT = -1;
+
+    private int width;
+    private int height;
+    private float[] g;
+    private float[] h;
+    private int[] parent;
+    private int[] depth;
+    private int[] stamp;
+    private int[] closedStamp;
+    private int generation;
+    private OpenList open;
+
+    public SearchContext(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        g = new float[size];
+        h = new float[size];
+        parent = new int[size];
+        depth = new int[size];
+        stamp = new int[size];
+        closedStamp = new int[size];
+        open = new OpenList(size);
+    }
+
+    public SearchContext(TileBasedMap map) {
+        this(map.getWidthInTiles(), map.getHeightInTiles());
+    }
+
+    /** Forget every node of the previous search */
+    public void reset() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(closedStamp, 0);
+            generation = 1;
+        }
+        open.clear();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSize() {
+        return stamp.length;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getX(int index) {
+        return index % width;
+    }
+
+    public int getY(int index) {
+        return index / width;
+    }
+
+    public OpenList getOpen() {
+        return open;
+    }
+
+    /** @return true if the node was reached during the current search */
+    public boolean isSeen(int index) {
+        return stamp[index] == generation;
+    }
+
+    /**
+     * Record a node reached during the current search
+     * @param index node index
+     * @param cost cost from the search origin
+     * @param heuristic estimated cost to the search goal
+     * @param parentIndex node it was reached from, or NO_PARENT
+     * @param nodeDepth number of steps from the search origin
+     */
+    public void setNode(int index, float cost, float heuristic, int parentIndex, int nodeDepth) {
+        stamp[index] = generation;
+        g[index] = cost;
+        h[index] = heuristic;
+        parent[index] = parentIndex;
+        depth[index] = nodeDepth;
+    }
+
+    /** Update the cost and parent of a node that keeps its heuristic */
+    public void relax(int index, float cost, int parentIndex, int nodeDepth) {
+        g[index] = cost;
+        parent[index] = parentIndex;
+        depth[index] = nodeDepth;
+    }
+
+    /** @return cost from the origin, or Float.MAX_VALUE for nodes not reached yet */
+    public float getCost(int index) {
+        return isSeen(index) ? g[index] : Float.MAX_VALUE;
+    }
+
+    public float getHeuristic(int index) {
+        return h[index];
+    }
+
+    public float getF(int index) {
+        return g[index] + h[index];
+    }
+
+    public int getParent(int index) {
+        return isSeen(index) ? parent[index] : NO_PARENT;
+    }
+
+    public int getDepth(int index) {
+        return depth[index];
+    }
+
+    public boolean isClosed(int index) {
+        return closedStamp[index] == generation;
+    }
+
+    public void setClosed(int index, boolean closed) {
+        closedStamp[index] = closed ? generation : 0;
+    }
+
+    /**
+     * Build a path by walking parent links back from the target. Links between
+     * tiles that are not adjacent are expanded into the tiles between them.
+     * @param start index of the first step
+     * @param target index of the last step
+     * @return path from start to target, or null if target was not reached from start
+     */
+    public Path buildPath(int start, int target) {
+        if (target == start || getParent(target) == NO_PARENT) {
+            return null;
+        }
+
+        Path path = new Path();
+        PathFinder.Action action = null;
+        int current = target;
+
+        while (current != start) {
+            int previous = parent[current];
+            int px = getX(previous);
+            int py = getY(previous);
+            int x = getX(current);
+            int y = getY(current);
+
+            // parent links may span a straight or diagonal run of tiles (jump points)
+            while ((x != px) || (y != py)) {
+                path.prependStep(x, y, action);
+                int nx = x - Integer.signum(x - px);
+                int ny = y - Integer.signum(y - py);
+                action = direction(nx, ny, x, y);
+                x = nx;
+                y = ny;
+            }
+            current = previous;
+        }
+        path.prependStep(getX(start), getY(start), action);
+
+        return path;
+    }
+
+    /** @return action leading from one tile to an adjacent one */
+    public static PathFinder.Action direction(int fromX, int fromY, int toX, int toY) {
+        if (toX < fromX) {
+            return PathFinder.Action.W;
+        } else if (toY < fromY) {
+            return PathFinder.Action.N;
+        } else if (toX > fromX) {
+            return PathFinder.Action.E;
+        }
+        return PathFinder.Action.S;
+    }
+}
@@ -0,0 +1,112 @@
+package PathFindingFramework;
+
+/**
+ * Work done by path finder queries, summed over every query recorded into it. A finder
+ * only measures when a sink has been set, so leaving it unset costs one null check per
+ * query. Instances are not thread safe; give each thread its own and merge them.
+ */
+public class SearchStats {
+
+    private long queries;
+    private long expanded;
+    private long generated;
+    private long reopened;
+    private int peakOpen;
+    private int maxDepth;
+    private long depthLimited;
+    private long nanos;
+
+    /**
+     * Add one query
+     * @param depthLimited true if the search stopped because it reached maxSearchDistance
+     */
+    public void record(int expanded, int generated, int reopened, int peakOpen,
+            int maxDepth, boolean depthLimited, long nanos) {
+        queries++;
+        this.expanded += expanded;
+        this.generated += generated;
+        this.reopened += reopened;
+        this.peakOpen = Math.max(this.peakOpen, peakOpen);
+        this.maxDepth = Math.max(this.maxDepth, maxDepth);
+        if (depthLimited) {
+            this.depthLimited++;
+        }
+        this.nanos += nanos;
+    }
+
+    /** Add the totals of another sink to this one */
+    public void merge(SearchStats other) {
+        queries += other.queries;
+        expanded += other.expanded;
+        generated += other.generated;
+        reopened += other.reopened;
+        peakOpen = Math.max(peakOpen, other.peakOpen);
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        depthLimited += other.depthLimited;
+        nanos += other.nanos;
+    }
+
+    public void reset() {
+        queries = 0;
+        expanded = 0;
+        generated = 0;
+        reopened = 0;
+        peakOpen = 0;
+        maxDepth = 0;
+        depthLimited = 0;
+        nanos = 0;
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    /** @return nodes taken from the open list */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /** @return nodes added to the open list for the first time in their query */
+    public long getGenerated() {
+        return generated;
+    }
+
+    /** @return closed nodes put back on the open list after a cheaper path was found */
+    public long getReopened() {
+        return reopened;
+    }
+
+    /** @return largest open list seen by any query */
+    public int getPeakOpen() {
+        return peakOpen;
+    }
+
+    /** @return deepest node reached by any query, in steps */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** @return queries that gave up because they reached maxSearchDistance */
+    public long getDepthLimited() {
+        return depthLimited;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public double getAverageExpanded() {
+        return queries == 0 ? 0 : (double) expanded / queries;
+    }
+
+    public double getAverageMicros() {
+        return queries == 0 ? 0 : nanos / 1000.0 / queries;
+    }
+
+    @Override
+    public String toString() {
+        return "queries=" + queries + " expanded=" + expanded + " generated=" + generated
+                + " reopened=" + reopened + " peakOpen=" + peakOpen + " maxDepth=" + maxDepth
+                + " depthLimited=" + depthLimited + " avgMicros=" + String.format("%.1f", getAverageMicros());
+    }
+}
@@ -0,0 +1,66 @@
+package GameMapGenerator;
+
+import PathFinding.GameMap;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import junit.framework.TestCase;
+
+/**
+ * Checks that evaluating and breeding on a pool leads to the same maps as a sequential
+ * run with the same seed.
+ */
+public class MapGeneratorTest extends TestCase {
+
+    private static final int POPULATION_SIZE = 400;
+    private static final int GENERATIONS = 50;
+    private static final long SEED = 42;
+    private static final int MAPS = 3;
+
+    public void testPoolMatchesSequentialRun() {
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            MapGenerator sequential = new MapGenerator(POPULATION_SIZE, GENERATIONS, null, SEED);
+            MapGenerator parallel = new MapGenerator(POPULATION_SIZE, GENERATIONS, pool, SEED);
+            ArrayList<GameMap> sequentialMaps = new ArrayList<GameMap>();
+            ArrayList<GameMap> parallelMaps = new ArrayList<GameMap>();
+
+            for (int i = 0; i < MAPS; i++) {
+                GameMap expected = sequential.generateMap(sequentialMaps);
+                GameMap actual = parallel.generateMap(parallelMaps);
+                assertSameMap(expected, actual);
+                sequentialMaps.add(expected);
+                parallelMaps.add(actual);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testSeedChangesMaps() {
+        GameMap first = new MapGenerator(40, 10, null, SEED).generateMap(new ArrayList<GameMap>());
+        GameMap second = new MapGenerator(40, 10, null, SEED + 1).generateMap(new ArrayList<GameMap>());
+        assertFalse(sameUnits(first, second));
+    }
+
+    private void assertSameMap(GameMap expected, GameMap actual) {
+        assertEquals(expected.getWidthInTiles(), actual.getWidthInTiles());
+        assertEquals(expected.getHeightInTiles(), actual.getHeightInTiles());
+        for (int x = 0; x < expected.getWidthInTiles(); x++) {
+            for (int y = 0; y < expected.getHeightInTiles(); y++) {
+                assertEquals("unit at " + x + ", " + y, expected.getUnit(x, y), actual.getUnit(x, y));
+                assertEquals("terrain at " + x + ", " + y, expected.getTerrain(x, y), actual.getTerrain(x, y));
+            }
+        }
+    }
+
+    private boolean sameUnits(GameMap first, GameMap second) {
+        for (int x = 0; x < first.getWidthInTiles(); x++) {
+            for (int y = 0; y < first.getHeightInTiles(); y++) {
+                if (first.getUnit(x, y) != second.getUnit(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
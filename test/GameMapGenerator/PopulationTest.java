@@ -0,0 +1,132 @@
+package GameMapGenerator;
+
+import PathFinding.GameMap;
+import java.util.SplittableRandom;
+import junit.framework.TestCase;
+
+/**
+ * Checks the counts and weighted sums Population keeps up to date against the full
+ * scans of MapCalculator, after random sequences of the genetic operators.
+ */
+public class PopulationTest extends TestCase {
+
+    private static final int SIZE = 6;
+    private static final int STEPS = 2000;
+    private static final double EPSILON = 1e-9;
+
+    public void testRunningTermsMatchFullScan() {
+        for (long seed = 0; seed < 5; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Population population = new Population(SIZE, GameMap.WIDTH, GameMap.HEIGHT);
+            for (int i = 0; i < SIZE; i++) {
+                population.randomize(i, random);
+                check(population, i, random);
+            }
+            for (int step = 0; step < STEPS; step++) {
+                int individual = random.nextInt(SIZE);
+                switch (random.nextInt(5)) {
+                    case 0:
+                        population.randomize(individual, random);
+                        break;
+                    case 1:
+                        population.mutate(individual, GameMap.UNIT_FIELDS, random);
+                        break;
+                    case 2:
+                        population.reduceNumberOfBombs(individual, random);
+                        break;
+                    case 3:
+                        GameMap map = new GameMap(GameMap.WIDTH, GameMap.HEIGHT, random);
+                        map.randomMap();
+                        population.load(individual, map);
+                        break;
+                    default:
+                        crossover(population, random);
+                        break;
+                }
+                check(population, individual, random);
+            }
+            for (int i = 0; i < SIZE; i++) {
+                check(population, i, random);
+            }
+        }
+    }
+
+    public void testWeightsMatchNeighbourFormula() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1000; i++) {
+            int[] counts = new int[GameMap.WIDTH];
+            for (int j = 0; j < counts.length; j++) {
+                counts[j] = random.nextInt(GameMap.HEIGHT + 1);
+            }
+            assertEquals(columnsFitness(counts), MapCalculator.columnsFitness(counts), EPSILON);
+            assertEquals(rowsFitness(counts), MapCalculator.rowsFitness(counts), EPSILON);
+        }
+    }
+
+    private void crossover(Population population, SplittableRandom random) {
+        int firstParent = random.nextInt(SIZE);
+        int secondParent = random.nextInt(SIZE);
+        int firstChild = random.nextInt(SIZE);
+        int secondChild = random.nextInt(SIZE);
+        if (firstChild == secondChild || firstChild == firstParent || firstChild == secondParent
+                || secondChild == firstParent || secondChild == secondParent) {
+            return;
+        }
+        int length = population.getGenomeLength();
+        int split = population.budgetedSplit(firstParent, secondParent, 0, length, random);
+        if (split < 0) {
+            split = random.nextInt(length + 1);
+        }
+        population.crossover(firstParent, secondParent, firstChild, secondChild, split);
+        check(population, firstChild, random);
+        check(population, secondChild, random);
+    }
+
+    private void check(Population population, int individual, SplittableRandom random) {
+        int[][] units = population.toGameMap(individual, random).getUnits();
+        int[] genes = MapCalculator.matrixToArray(units);
+
+        for (int unit : GameMap.UNIT_FIELDS) {
+            assertEquals(MapCalculator.occurrences(genes, unit), population.count(individual, unit));
+        }
+        double bombsCountFitness = MapCalculator.bombsCountFitness(population.count(individual, GameMap.EASY_BOMB),
+                population.count(individual, GameMap.MEDIUM_BOMB), population.count(individual, GameMap.HARD_BOMB));
+        assertEquals(MapCalculator.bombsCountFitness(genes), bombsCountFitness, EPSILON);
+        assertEquals(MapCalculator.calculateRowsFitness(units),
+                MapCalculator.rowsFitness(population.weightedRowCount(individual)), EPSILON);
+        assertEquals(MapCalculator.calculateColumnsFitness(units),
+                MapCalculator.columnsFitness(population.weightedColumnCount(individual)), EPSILON);
+    }
+
+    /** Column fitness as first written, term by term over each column and its neighbours */
+    private static double columnsFitness(int[] counts) {
+        double fitness = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            if (i == 0) {
+                fitness += (0.5 * counts[i] + 0.6 * counts[i + 1]) / 2;
+            } else if (i == counts.length - 1) {
+                fitness += (0.6 * counts[i - 1] + 0.5 * counts[i]) / 2;
+            } else {
+                fitness += (0.8 * counts[i - 1] + counts[i] + 0.8 * counts[i + 1]) / 3;
+            }
+        }
+        return fitness / GameMap.WIDTH;
+    }
+
+    /** Rows fitness as first written, term by term over each row and its neighbours */
+    private static double rowsFitness(int[] counts) {
+        double fitness = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            if (i == 0) {
+                fitness += (0.4 * counts[i] + 0.55 * counts[i + 1]) / 2;
+            } else if (i == counts.length - 1) {
+                fitness += (0.55 * counts[i - 1] + 0.4 * counts[i]) / 2;
+            } else {
+                fitness += (0.65 * counts[i - 1] + 0.85 * counts[i] + 0.65 * counts[i + 1]) / 3;
+            }
+        }
+        return fitness / GameMap.HEIGHT;
+    }
+}
@@ -0,0 +1,93 @@
+package PathFinding;
+
+import Game.Minesweeper;
+import PathFindingFramework.AStarPathFinder;
+import PathFindingFramework.Mover;
+import PathFindingFramework.Path;
+import PathFindingFramework.RandomGrid;
+import PathFindingFramework.SearchStats;
+import PathFindingFramework.TileBasedMap;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Times AStarPathFinder with the binary heap against the integer bucket queue on the
+ * same random queries, first on game maps and then on a large grid with random walls.
+ * Lives with the tests so it stays out of the game jar. Run from the test classes with:
+ * java PathFinding.PathFinderBenchmark [queries] [grid size]
+ */
+public class PathFinderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int gridSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        Mover mover = new UnitMover(Minesweeper.Personality.CLEVER);
+
+        GameMap gameMap = new GameMap(GameMap.WIDTH, GameMap.HEIGHT, new SplittableRandom(1));
+        gameMap.randomMap();
+        for (boolean diagonal : new boolean[] { false, true }) {
+            compare("game map " + GameMap.WIDTH + "x" + GameMap.HEIGHT, gameMap, mover, queries, diagonal);
+        }
+        TileBasedMap grid = new RandomGrid(gridSize, gridSize, 0.3f, new Random(1));
+        for (boolean diagonal : new boolean[] { false, true }) {
+            compare("grid " + gridSize + "x" + gridSize, grid, mover, Math.max(1, queries / 100), diagonal);
+        }
+    }
+
+    private static void compare(String name, TileBasedMap map, Mover mover, int queries, boolean diagonal) {
+        int[] endpoints = randomEndpoints(map, mover, queries, 42);
+        AStarPathFinder heap = new AStarPathFinder(map, Integer.MAX_VALUE, diagonal);
+        AStarPathFinder buckets = new AStarPathFinder(map, Integer.MAX_VALUE, diagonal);
+        buckets.setIntegerCosts(true);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(heap, mover, endpoints);
+            run(buckets, mover, endpoints);
+        }
+        SearchStats heapStats = run(heap, mover, endpoints);
+        SearchStats bucketStats = run(buckets, mover, endpoints);
+
+        int mismatches = 0;
+        for (int i = 0; i < endpoints.length; i += 4) {
+            Path a = heap.findPath(mover, endpoints[i], endpoints[i + 1], endpoints[i + 2], endpoints[i + 3]);
+            Path b = buckets.findPath(mover, endpoints[i], endpoints[i + 1], endpoints[i + 2], endpoints[i + 3]);
+            if ((a == null) != (b == null) || (a != null && a.getLength() != b.getLength())) {
+                mismatches++;
+            }
+        }
+        System.out.println(name + (diagonal ? ", diagonal" : ", 4-connected") + ", " + queries + " queries");
+        System.out.println("  heap:    " + heapStats);
+        System.out.println("  buckets: " + bucketStats + (buckets.isIntegerCosts() ? "" : " (fell back to heap)"));
+        System.out.println(String.format("  speedup %.2fx, length mismatches %d",
+                (double) heapStats.getNanos() / bucketStats.getNanos(), mismatches));
+    }
+
+    private static SearchStats run(AStarPathFinder finder, Mover mover, int[] endpoints) {
+        SearchStats stats = new SearchStats();
+        finder.setSearchStats(stats);
+        for (int i = 0; i < endpoints.length; i += 4) {
+            finder.findPath(mover, endpoints[i], endpoints[i + 1], endpoints[i + 2], endpoints[i + 3]);
+        }
+        finder.setSearchStats(null);
+        return stats;
+    }
+
+    /** @return start and target pairs on open tiles, four ints per query */
+    private static int[] randomEndpoints(TileBasedMap map, Mover mover, int queries, long seed) {
+        Random random = new Random(seed);
+        int[] endpoints = new int[4 * queries];
+        for (int i = 0; i < endpoints.length; i += 2) {
+            int x;
+            int y;
+            do {
+                x = random.nextInt(map.getWidthInTiles());
+                y = random.nextInt(map.getHeightInTiles());
+            } while (map.blocked(mover, x, y));
+            endpoints[i] = x;
+            endpoints[i + 1] = y;
+        }
+        return endpoints;
+    }
+}
@@ -0,0 +1,113 @@
+package PathFindingFramework;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Compares HierarchicalPathFinder with AStarPathFinder on random maps, for a finder
+ * built for each map and for one kept up to date through tileChanged.
+ */
+public class HierarchicalPathFinderTest extends TestCase {
+
+    private static final int SIZE = 40;
+    private static final int QUERIES = 300;
+    /** Refined and smoothed paths may be this many times longer than the optimal ones, plus MAX_DETOUR steps */
+    private static final double MAX_STRETCH = 1.1;
+    private static final int MAX_DETOUR = 8;
+
+    private static final Mover MOVER = new Mover() {
+    };
+
+    public void testFourConnectedFindsNearOptimalPaths() {
+        compare(new RandomGrid(SIZE, SIZE, 0.3f, new Random(1)), false, 5, 1);
+        compare(new RandomGrid(SIZE, SIZE, 0.3f, new Random(2)), false, 8, 2);
+        compare(new RandomGrid(SIZE, SIZE, 0.3f, new Random(3)), false, 10, 3);
+    }
+
+    public void testDiagonalFindsNearOptimalPaths() {
+        compare(new RandomGrid(SIZE, SIZE, 0.3f, new Random(4)), true, 5, 4);
+        compare(new RandomGrid(SIZE, SIZE, 0.3f, new Random(5)), true, 8, 5);
+    }
+
+    public void testDiagonalCrossesClusterCorners() {
+        for (long seed = 6; seed < 9; seed++) {
+            RandomGrid grid = new RandomGrid(SIZE, SIZE, 0.2f, new Random(seed));
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = (y + 1) % 2; x < SIZE; x += 2) {
+                    grid.setBlocked(x, y, true);
+                }
+            }
+            compare(grid, true, 5, seed);
+        }
+    }
+
+    public void testDiagonalOnlyThroughCorners() {
+        RandomGrid grid = new RandomGrid(10, 10, 1, new Random(1));
+        for (int i = 0; i < 10; i++) {
+            grid.setBlocked(i, i, false);
+        }
+        HierarchicalPathFinder finder = new HierarchicalPathFinder(grid, 5, true);
+
+        Path path = finder.findPath(MOVER, 0, 0, 9, 9);
+        assertNotNull(path);
+        assertEquals(10, path.getLength());
+    }
+
+    public void testBlockedStartOnClusterBorder() {
+        RandomGrid grid = new RandomGrid(10, 10, 0, new Random(1));
+        for (int y = 0; y < 10; y++) {
+            grid.setBlocked(4, y, true);
+        }
+        HierarchicalPathFinder finder = new HierarchicalPathFinder(grid, 5, false);
+
+        Path path = finder.findPath(MOVER, 4, 2, 5, 2);
+        assertNotNull(path);
+        assertEquals(2, path.getLength());
+        assertEquals(5, path.getX(1));
+    }
+
+    private void compare(RandomGrid grid, boolean allowDiagMovement, int clusterSize, long seed) {
+        Random random = new Random(seed);
+        HierarchicalPathFinder updated = new HierarchicalPathFinder(grid, clusterSize, allowDiagMovement);
+        grid.setListener(updated);
+
+        for (int round = 0; round < 4; round++) {
+            HierarchicalPathFinder fresh = new HierarchicalPathFinder(grid, clusterSize, allowDiagMovement);
+            AStarPathFinder reference = new AStarPathFinder(grid, SIZE * SIZE, allowDiagMovement);
+            for (int i = 0; i < QUERIES; i++) {
+                int sx = random.nextInt(SIZE);
+                int sy = random.nextInt(SIZE);
+                int tx = random.nextInt(SIZE);
+                int ty = random.nextInt(SIZE);
+                Path expected = reference.findPath(MOVER, sx, sy, tx, ty);
+                check(grid, expected, fresh.findPath(MOVER, sx, sy, tx, ty), allowDiagMovement, sx, sy, tx, ty);
+                check(grid, expected, updated.findPath(MOVER, sx, sy, tx, ty), allowDiagMovement, sx, sy, tx, ty);
+            }
+            for (int i = 0; i < 40; i++) {
+                grid.toggle(random.nextInt(SIZE), random.nextInt(SIZE));
+            }
+        }
+    }
+
+    private void check(RandomGrid grid, Path expected, Path actual, boolean allowDiagMovement,
+            int sx, int sy, int tx, int ty) {
+        String query = "(" + sx + ", " + sy + ") to (" + tx + ", " + ty + ")";
+        assertEquals("path exists " + query, expected != null, actual != null);
+        if (actual == null) {
+            return;
+        }
+        assertEquals(sx, actual.getX(0));
+        assertEquals(sy, actual.getY(0));
+        assertEquals(tx, actual.getX(actual.getLength() - 1));
+        assertEquals(ty, actual.getY(actual.getLength() - 1));
+        for (int i = 1; i < actual.getLength(); i++) {
+            int dx = Math.abs(actual.getX(i) - actual.getX(i - 1));
+            int dy = Math.abs(actual.getY(i) - actual.getY(i - 1));
+            assertTrue("step too long " + query, dx <= 1 && dy <= 1 && dx + dy > 0);
+            assertTrue("diagonal step " + query, allowDiagMovement || dx + dy == 1);
+            assertFalse("blocked step " + query, grid.blocked(MOVER, actual.getX(i), actual.getY(i)));
+        }
+        assertTrue("path of " + actual.getLength() + " steps instead of " + expected.getLength() + " " + query,
+                actual.getLength() - 1 <= MAX_STRETCH * (expected.getLength() - 1) + MAX_DETOUR);
+    }
+}
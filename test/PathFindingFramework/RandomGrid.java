@@ -0,0 +1,65 @@
+package PathFindingFramework;
+
+import java.util.Random;
+
+/**
+ * Grid with unit step costs where a random share of the tiles is blocked, shared by
+ * the path finder tests and benchmarks. Tiles toggled through the grid are reported
+ * to its listener.
+ */
+public class RandomGrid implements TileBasedMap {
+
+    private int width;
+    private int height;
+    private boolean[] blocked;
+    private MapChangeListener listener;
+
+    public RandomGrid(int width, int height, float density, Random random) {
+        this.width = width;
+        this.height = height;
+        blocked = new boolean[width * height];
+        for (int i = 0; i < blocked.length; i++) {
+            blocked[i] = random.nextFloat() < density;
+        }
+    }
+
+    public void setListener(MapChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /** Set a tile without telling the listener, for building a grid */
+    public void setBlocked(int x, int y, boolean blocked) {
+        this.blocked[y * width + x] = blocked;
+    }
+
+    public void toggle(int x, int y) {
+        blocked[y * width + x] = !blocked[y * width + x];
+        if (listener != null) {
+            listener.tileChanged(x, y);
+        }
+    }
+
+    @Override
+    public int getWidthInTiles() {
+        return width;
+    }
+
+    @Override
+    public int getHeightInTiles() {
+        return height;
+    }
+
+    @Override
+    public void pathFinderVisited(int x, int y) {
+    }
+
+    @Override
+    public boolean blocked(Mover mover, int x, int y) {
+        return blocked[y * width + x];
+    }
+
+    @Override
+    public float getCost(Mover mover, int sx, int sy, int tx, int ty) {
+        return 1;
+    }
+}